@@ -2,4 +2,13 @@ public interface Action {
 
     void executeAction(EventScheduler scheduler);
 
+    /*
+       Runs the action as one of region's events during a RegionExecutor
+       window, reading and writing nothing outside the region, or returns
+       false having done nothing so that it runs in the serial phase.
+    */
+    default boolean executeInRegion(Region region) {
+        return false;
+    }
+
 }
@@ -0,0 +1,51 @@
+/*
+   An entity that acts on its own every actionPeriod milliseconds.
+*/
+abstract class ActiveEntity extends Entity {
+   private final int actionPeriod;
+
+   protected ActiveEntity(EntityKind kind, String id, Point position,
+                          String imageKey, int actionPeriod) {
+      super(kind, id, position, imageKey);
+      this.actionPeriod = actionPeriod;
+   }
+
+   public int actionPeriod(){
+      return this.actionPeriod;
+   }
+
+   public abstract void executeActivity(WorldModel world,
+                                        EventScheduler scheduler);
+
+   /* see Action.executeInRegion; by default every activity runs serially */
+   public boolean executeActivityInRegion(WorldModel world, Region region)
+   {
+      return false;
+   }
+
+   @Override
+   public void scheduleActions(EventScheduler scheduler, WorldModel world) {
+      scheduler.scheduleEvent(this, new Activity(this, world),
+              this.actionPeriod);
+   }
+
+   /* moves onto the packed position, evicting whatever is there */
+   protected void stepTo(WorldModel world, long nextPos,
+                         EventScheduler scheduler)
+   {
+      int x = Point.unpackX(nextPos);
+      int y = Point.unpackY(nextPos);
+      if (x == this.position().x() && y == this.position().y())
+      {
+         return;
+      }
+
+      Entity occupant = world.occupantAt(x, y);
+      if (occupant != null)
+      {
+         scheduler.unscheduleAllEvents(occupant);
+      }
+
+      world.moveEntity(this, x, y);
+   }
+}
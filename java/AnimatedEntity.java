@@ -0,0 +1,80 @@
+/*
+   An active entity that also cycles through its sprite frames every
+   animationPeriod milliseconds, either on Animation events or, when the
+   scheduler derives frames from time, from the moment it started.
+*/
+abstract class AnimatedEntity extends ActiveEntity {
+   private final int animationPeriod;
+   private int imageIndex;
+   private long animationEpoch;
+   private long animationStep;
+
+   protected AnimatedEntity(EntityKind kind, String id, Point position,
+                            String imageKey, int actionPeriod,
+                            int animationPeriod) {
+      super(kind, id, position, imageKey, actionPeriod);
+      this.animationPeriod = animationPeriod;
+      this.imageIndex = 0;
+   }
+
+   public int getAnimationPeriod() {
+      return animationPeriod;
+   }
+
+   /* number of frames to show, 0 for an endless loop */
+   public int animationRepeatCount() {
+      return 0;
+   }
+
+   @Override
+   public int imageIndex() {
+      return imageIndex;
+   }
+
+   /*
+      Derived from the animation start when the scheduler runs looping
+      animations without events, otherwise the stored counter.
+   */
+   @Override
+   public int imageIndex(long now) {
+      if (animationStep == 0) {
+         return imageIndex;
+      }
+      return derivedFrame(animationEpoch, animationStep, now);
+   }
+
+   /* frame index at now for a loop started at epoch, one frame per step */
+   static int derivedFrame(long epoch, long step, long now) {
+      long frames = Math.max(0, now - epoch) / step;
+      return (int)(frames & Integer.MAX_VALUE);
+   }
+
+   long animationEpoch() {
+      return animationEpoch;
+   }
+
+   long animationStep() {
+      return animationStep;
+   }
+
+   /* true when frames change with time rather than on Animation events */
+   public boolean hasDerivedFrames() {
+      return animationStep != 0;
+   }
+
+   /* frame advances once every step ms from epoch on */
+   void startDerivedAnimation(long epoch, long step) {
+      this.animationEpoch = epoch;
+      this.animationStep = step;
+   }
+
+   public void nextImage() {
+      imageIndex = (imageIndex + 1) & Integer.MAX_VALUE;
+   }
+
+   @Override
+   public void scheduleActions(EventScheduler scheduler, WorldModel world) {
+      super.scheduleActions(scheduler, world);
+      scheduler.scheduleAnimation(this, world, this.animationRepeatCount());
+   }
+}
@@ -1,31 +1,46 @@
 public class Animation implements Action{
-    private Entity entity;
+    private AnimatedEntity entity;
     private WorldModel world;
-    private ImageStore imageStore;
     private int repeatCount;
 
-    public Animation(Entity entity, int repeatCount)
+    public Animation(AnimatedEntity entity, WorldModel world, int repeatCount)
     {
         this.entity = entity;
-        this.world = null;
-        this.imageStore = null;
+        this.world = world;
         this.repeatCount = repeatCount;
     }
 
     public void executeAction(EventScheduler scheduler) {
         entity.nextImage();
+        frameChanged();
 
         if (repeatCount != 1)
         {
-            scheduler.scheduleEvent(entity,
-                    new Animation(entity, Math.max(repeatCount - 1, 0)),
+            scheduler.scheduleEvent(entity, next(),
                     entity.getAnimationPeriod());
         }
     }
-/*
-    public static Action createAnimationAction(Entity entity, int repeatCount)
-    {
-        return new Animation(entity, repeatCount);
+
+    /* a frame step only touches the entity, so it always runs in place */
+    @Override
+    public boolean executeInRegion(Region region) {
+        entity.nextImage();
+        frameChanged();
+
+        if (repeatCount != 1)
+        {
+            region.scheduleEvent(entity, next(),
+                    entity.getAnimationPeriod());
+        }
+        return true;
+    }
+
+    private Animation next() {
+        return new Animation(entity, world, Math.max(repeatCount - 1, 0));
+    }
+
+    /* lets a renderer know the entity's cell needs repainting */
+    private void frameChanged() {
+        world.markDirty(entity.position());
     }
-*/
 }
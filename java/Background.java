@@ -1,19 +1,25 @@
-import java.util.List;
-import processing.core.PImage;
-
 final class Background
 {
    private String id;
-   private List<PImage> images;
+   private int spriteId;
    private int imageIndex;
 
-   public Background(String id, List<PImage> images)
+   public Background(String id)
    {
       this.id = id;
-      this.images = images;
+      this.spriteId = SpriteKeys.idOf(id);
+   }
+
+   /* backgrounds are keyed by their id in the image list */
+   public String imageKey() {
+      return id;
+   }
+
+   public int spriteId() {
+      return spriteId;
    }
 
-   public PImage getCurrentImage() {
-      return (images.get(imageIndex));
+   public int imageIndex() {
+      return imageIndex;
    }
 }
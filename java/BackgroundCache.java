@@ -0,0 +1,188 @@
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+/*
+   Pre-rendered background for the world view. The world is split into
+   square chunks of CHUNK_TILES x CHUNK_TILES cells, each rendered once
+   into an offscreen PGraphics the first time it becomes visible; a
+   frame then costs one blit per visible chunk (at most four, since a
+   chunk is larger than the viewport) instead of one per tile.
+
+   Only the most recently drawn chunks are kept, so memory stays bounded
+   on huge maps. Background changes reported by the world mark single
+   cells dirty, and those cells are redrawn into their chunk on the next
+   frame that shows it.
+*/
+final class BackgroundCache
+   implements WorldModel.BackgroundListener
+{
+   private static final int CHUNK_BITS = 5;
+   private static final int CHUNK_TILES = 1 << CHUNK_BITS;
+   private static final int CHUNK_MASK = CHUNK_TILES - 1;
+   private static final int MAX_CACHED_CHUNKS = 8;
+
+   private final PApplet screen;
+   private final WorldModel world;
+   private final ImageStore imageStore;
+   private final int tileWidth;
+   private final int tileHeight;
+   private final Map<Long, Chunk> chunks;
+
+   public BackgroundCache(PApplet screen, WorldModel world,
+      ImageStore imageStore, int tileWidth, int tileHeight)
+   {
+      this.screen = screen;
+      this.world = world;
+      this.imageStore = imageStore;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true)
+      {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest)
+         {
+            if (this.size() > MAX_CACHED_CHUNKS)
+            {
+               eldest.getValue().graphics.dispose();
+               return true;
+            }
+            return false;
+         }
+      };
+      world.addBackgroundListener(this);
+   }
+
+   public int cachedChunks()
+   {
+      return this.chunks.size();
+   }
+
+   public void backgroundChanged(int x, int y)
+   {
+      Chunk chunk = this.chunks.get(chunkKey(x >> CHUNK_BITS, y >> CHUNK_BITS));
+      if (chunk != null)
+      {
+         chunk.dirty.set(((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK));
+      }
+   }
+
+   /* draws the cells of viewport with its top-left corner at (0, 0) */
+   public void draw(Viewport viewport)
+   {
+      int left = viewport.col();
+      int top = viewport.row();
+      int right = Math.min(left + viewport.numCols(), this.world.numCols());
+      int bottom = Math.min(top + viewport.numRows(), this.world.numRows());
+
+      for (int cy = top >> CHUNK_BITS; cy <= (bottom - 1) >> CHUNK_BITS; cy++)
+      {
+         for (int cx = left >> CHUNK_BITS; cx <= (right - 1) >> CHUNK_BITS;
+              cx++)
+         {
+            Chunk chunk = this.chunk(cx, cy);
+            this.screen.image(chunk.graphics,
+                    ((cx << CHUNK_BITS) - left) * this.tileWidth,
+                    ((cy << CHUNK_BITS) - top) * this.tileHeight);
+         }
+      }
+   }
+
+   /* redraws the single world cell (x, y), which must be in viewport */
+   public void drawCell(Viewport viewport, int x, int y)
+   {
+      Chunk chunk = this.chunk(x >> CHUNK_BITS, y >> CHUNK_BITS);
+      int u = (x & CHUNK_MASK) * this.tileWidth;
+      int v = (y & CHUNK_MASK) * this.tileHeight;
+      this.screen.image(chunk.graphics,
+              viewport.viewX(x) * this.tileWidth,
+              viewport.viewY(y) * this.tileHeight,
+              this.tileWidth, this.tileHeight,
+              u, v, u + this.tileWidth, v + this.tileHeight);
+   }
+
+   private Chunk chunk(int cx, int cy)
+   {
+      long key = chunkKey(cx, cy);
+      Chunk chunk = this.chunks.get(key);
+      if (chunk == null)
+      {
+         chunk = this.render(cx, cy);
+         this.chunks.put(key, chunk);
+      }
+      else if (!chunk.dirty.isEmpty())
+      {
+         this.repaint(chunk, cx, cy);
+      }
+      return chunk;
+   }
+
+   private Chunk render(int cx, int cy)
+   {
+      int x0 = cx << CHUNK_BITS;
+      int y0 = cy << CHUNK_BITS;
+      int cols = Math.min(CHUNK_TILES, this.world.numCols() - x0);
+      int rows = Math.min(CHUNK_TILES, this.world.numRows() - y0);
+
+      PGraphics graphics = this.screen.createGraphics(
+              cols * this.tileWidth, rows * this.tileHeight);
+      graphics.beginDraw();
+      for (int row = 0; row < rows; row++)
+      {
+         for (int col = 0; col < cols; col++)
+         {
+            this.drawCell(graphics, x0 + col, y0 + row, col, row);
+         }
+      }
+      graphics.endDraw();
+
+      return new Chunk(graphics);
+   }
+
+   private void repaint(Chunk chunk, int cx, int cy)
+   {
+      int x0 = cx << CHUNK_BITS;
+      int y0 = cy << CHUNK_BITS;
+
+      chunk.graphics.beginDraw();
+      for (int i = chunk.dirty.nextSetBit(0); i >= 0;
+           i = chunk.dirty.nextSetBit(i + 1))
+      {
+         int col = i & CHUNK_MASK;
+         int row = i >> CHUNK_BITS;
+         this.drawCell(chunk.graphics, x0 + col, y0 + row, col, row);
+      }
+      chunk.graphics.endDraw();
+      chunk.dirty.clear();
+   }
+
+   private void drawCell(PGraphics graphics, int x, int y, int col, int row)
+   {
+      Background background = this.world.backgroundAt(x, y);
+      if (background != null)
+      {
+         graphics.image(this.imageStore.getCurrentImage(background),
+                 col * this.tileWidth, row * this.tileHeight);
+      }
+   }
+
+   private static long chunkKey(int cx, int cy)
+   {
+      return ((long)cy << 32) | (cx & 0xffffffffL);
+   }
+
+   private static final class Chunk
+   {
+      final PGraphics graphics;
+      final BitSet dirty;
+
+      Chunk(PGraphics graphics)
+      {
+         this.graphics = graphics;
+         this.dirty = new BitSet(CHUNK_TILES * CHUNK_TILES);
+      }
+   }
+}
@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+   Background tiles stored as a palette of shared Background flyweights
+   plus a short palette index per cell. Cells are grouped into the same
+   chunks as ChunkedGrid, through the same ChunkTable; a chunk exists
+   only while some cell in it differs from the default background
+   (palette entry 0).
+*/
+final class BackgroundLayer
+{
+   private static final int MAX_PALETTE = Short.MAX_VALUE;
+
+   private final List<Background> palette;
+   private final Map<String, Short> paletteIndex;
+   private final ChunkTable<Chunk> chunks;
+
+   public BackgroundLayer(Background defaultBackground)
+   {
+      this.palette = new ArrayList<>();
+      this.paletteIndex = new HashMap<>();
+      this.chunks = new ChunkTable<>();
+      this.intern(defaultBackground);
+   }
+
+   public int paletteSize()
+   {
+      return this.palette.size();
+   }
+
+   public int chunkCount()
+   {
+      return this.chunks.size();
+   }
+
+   public Background get(int x, int y)
+   {
+      Chunk chunk = this.chunks.get(x, y);
+      if (chunk == null)
+      {
+         return this.palette.get(0);
+      }
+      return this.palette.get(chunk.cells[ChunkTable.cellIndex(x, y)]);
+   }
+
+   /* backgrounds are compared by id; the first one seen for an id is kept */
+   public void set(int x, int y, Background background)
+   {
+      this.setIndex(x, y, this.intern(background));
+   }
+
+   public void set(int x, int y, String id)
+   {
+      Short index = this.paletteIndex.get(id);
+      this.setIndex(x, y, index != null ? index :
+              this.intern(new Background(id)));
+   }
+
+   private short intern(Background background)
+   {
+      Short index = this.paletteIndex.get(background.imageKey());
+      if (index != null)
+      {
+         return index;
+      }
+
+      if (this.palette.size() >= MAX_PALETTE)
+      {
+         throw new IllegalStateException("too many distinct backgrounds");
+      }
+
+      short added = (short)this.palette.size();
+      this.palette.add(background);
+      this.paletteIndex.put(background.imageKey(), added);
+      return added;
+   }
+
+   private void setIndex(int x, int y, short value)
+   {
+      Chunk chunk = this.chunks.get(x, y);
+      if (chunk == null)
+      {
+         if (value == 0)
+         {
+            return;
+         }
+         chunk = new Chunk();
+         this.chunks.put(x, y, chunk);
+      }
+
+      int index = ChunkTable.cellIndex(x, y);
+      short old = chunk.cells[index];
+      chunk.cells[index] = value;
+
+      if (old == 0 && value != 0)
+      {
+         chunk.used++;
+      }
+      else if (old != 0 && value == 0 && --chunk.used == 0)
+      {
+         this.chunks.remove(x, y);
+      }
+   }
+
+   private static final class Chunk
+   {
+      final short[] cells = new short[ChunkTable.CHUNK_CELLS];
+      int used;
+   }
+}
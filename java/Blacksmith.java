@@ -1,14 +1,5 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
-
-public class Blacksmith {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+final class Blacksmith extends Entity {
+   public Blacksmith(String id, Point position, String imageKey) {
+      super(EntityKind.BLACKSMITH, id, position, imageKey);
+   }
 }
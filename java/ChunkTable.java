@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/*
+   The chunk bookkeeping shared by the sparse world grids: which square
+   CHUNK_SIZE x CHUNK_SIZE chunk a cell falls in, where the cell sits in
+   that chunk's flat array, and a table of the chunks that exist. The
+   chunk type itself (what a cell holds) is up to the grid.
+
+   The table is open-addressed on the packed chunk coordinates, probing
+   linearly, so a lookup neither boxes its key nor allocates anything.
+   Lookups write nothing, so any number of threads may read a table
+   that nobody is changing.
+*/
+final class ChunkTable<C>
+{
+   public static final int CHUNK_BITS = 6;
+   public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+   public static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+   private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+   // no chunk row is anywhere near this low, so it marks a free slot
+   private static final long FREE = Long.MIN_VALUE;
+   private static final int INITIAL_SLOT_BITS = 4;
+   private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+   private long[] keys;
+   private Object[] chunks;
+   private int slotBits;
+   private int size;
+
+   public ChunkTable()
+   {
+      this.allocate(INITIAL_SLOT_BITS);
+   }
+
+   public int size()
+   {
+      return this.size;
+   }
+
+   /* chunk holding cell (x, y), or null when there is none yet */
+   @SuppressWarnings("unchecked")
+   public C get(int x, int y)
+   {
+      int slot = this.find(chunkKey(x, y));
+      return slot < 0 ? null : (C)this.chunks[slot];
+   }
+
+   /* makes chunk the one holding cell (x, y) */
+   public void put(int x, int y, C chunk)
+   {
+      long key = chunkKey(x, y);
+      int mask = this.keys.length - 1;
+      int slot = this.home(key);
+      while (this.keys[slot] != FREE && this.keys[slot] != key)
+      {
+         slot = (slot + 1) & mask;
+      }
+
+      if (this.keys[slot] == FREE)
+      {
+         this.keys[slot] = key;
+         this.size++;
+      }
+      this.chunks[slot] = chunk;
+
+      // linear probing degrades quickly past half full
+      if (this.size * 2 > this.keys.length)
+      {
+         this.rehash(this.slotBits + 1);
+      }
+   }
+
+   public void remove(int x, int y)
+   {
+      int hole = this.find(chunkKey(x, y));
+      if (hole < 0)
+      {
+         return;
+      }
+
+      // shift later members of the probe run back so none is cut off
+      int mask = this.keys.length - 1;
+      int slot = (hole + 1) & mask;
+      while (this.keys[slot] != FREE)
+      {
+         int home = this.home(this.keys[slot]);
+         if (((slot - home) & mask) >= ((slot - hole) & mask))
+         {
+            this.keys[hole] = this.keys[slot];
+            this.chunks[hole] = this.chunks[slot];
+            hole = slot;
+         }
+         slot = (slot + 1) & mask;
+      }
+      this.keys[hole] = FREE;
+      this.chunks[hole] = null;
+      this.size--;
+   }
+
+   /* index of cell (x, y) within its chunk's CHUNK_CELLS array */
+   public static int cellIndex(int x, int y)
+   {
+      return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+   }
+
+   private int find(long key)
+   {
+      int mask = this.keys.length - 1;
+      int slot = this.home(key);
+      long found;
+      while ((found = this.keys[slot]) != key)
+      {
+         if (found == FREE)
+         {
+            return -1;
+         }
+         slot = (slot + 1) & mask;
+      }
+      return slot;
+   }
+
+   private int home(long key)
+   {
+      return (int)((key * GOLDEN) >>> (64 - this.slotBits));
+   }
+
+   private void allocate(int slotBits)
+   {
+      this.slotBits = slotBits;
+      this.keys = new long[1 << slotBits];
+      this.chunks = new Object[1 << slotBits];
+      Arrays.fill(this.keys, FREE);
+   }
+
+   private void rehash(int slotBits)
+   {
+      long[] oldKeys = this.keys;
+      Object[] oldChunks = this.chunks;
+      this.allocate(slotBits);
+
+      int mask = this.keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++)
+      {
+         if (oldKeys[i] != FREE)
+         {
+            int slot = this.home(oldKeys[i]);
+            while (this.keys[slot] != FREE)
+            {
+               slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = oldKeys[i];
+            this.chunks[slot] = oldChunks[i];
+         }
+      }
+   }
+
+   private static long chunkKey(int x, int y)
+   {
+      return ((long)(y >> CHUNK_BITS) << 32) |
+              ((x >> CHUNK_BITS) & 0xffffffffL);
+   }
+}
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/*
+   Sparse 2D grid split into square chunks that are allocated on the
+   first write of a non-default value and dropped again once every cell
+   in them is back to the default, so untouched regions of a huge map
+   cost nothing. Callers are expected to bounds-check coordinates.
+   Chunk size and lookup come from ChunkTable.
+*/
+final class ChunkedGrid<T>
+{
+   private final T defaultValue;
+   private final ChunkTable<Chunk> chunks;
+
+   public ChunkedGrid(T defaultValue)
+   {
+      this.defaultValue = defaultValue;
+      this.chunks = new ChunkTable<>();
+   }
+
+   public T defaultValue()
+   {
+      return this.defaultValue;
+   }
+
+   public int chunkCount()
+   {
+      return this.chunks.size();
+   }
+
+   @SuppressWarnings("unchecked")
+   public T get(int x, int y)
+   {
+      Chunk chunk = this.chunks.get(x, y);
+      if (chunk == null)
+      {
+         return this.defaultValue;
+      }
+      return (T)chunk.cells[ChunkTable.cellIndex(x, y)];
+   }
+
+   public void set(int x, int y, T value)
+   {
+      Chunk chunk = this.chunks.get(x, y);
+      if (chunk == null)
+      {
+         if (value == this.defaultValue)
+         {
+            return;
+         }
+         chunk = new Chunk(this.defaultValue);
+         this.chunks.put(x, y, chunk);
+      }
+
+      int index = ChunkTable.cellIndex(x, y);
+      Object old = chunk.cells[index];
+      chunk.cells[index] = value;
+
+      if (old == this.defaultValue && value != this.defaultValue)
+      {
+         chunk.used++;
+      }
+      else if (old != this.defaultValue && value == this.defaultValue &&
+              --chunk.used == 0)
+      {
+         this.chunks.remove(x, y);
+      }
+   }
+
+   /*
+      Moves the value in (fromX, fromY) to (toX, toY), which must hold
+      the default, leaving the default behind. A move within one chunk
+      writes just the two cells, so moves in disjoint parts of a chunk
+      can run at once (see RegionExecutor).
+   */
+   public void move(int fromX, int fromY, int toX, int toY)
+   {
+      Chunk chunk = this.chunks.get(fromX, fromY);
+      if (chunk != null && chunk == this.chunks.get(toX, toY))
+      {
+         int from = ChunkTable.cellIndex(fromX, fromY);
+         int to = ChunkTable.cellIndex(toX, toY);
+         if (chunk.cells[to] == this.defaultValue)
+         {
+            chunk.cells[to] = chunk.cells[from];
+            chunk.cells[from] = this.defaultValue;
+            return;
+         }
+      }
+
+      // the new cell is filled before the old one is cleared, so a lone
+      // value does not empty its chunk and drop it
+      this.set(toX, toY, this.get(fromX, fromY));
+      this.set(fromX, fromY, this.defaultValue);
+   }
+
+   private static final class Chunk
+   {
+      final Object[] cells;
+      int used;
+
+      Chunk(Object defaultValue)
+      {
+         this.cells = new Object[ChunkTable.CHUNK_CELLS];
+         if (defaultValue != null)
+         {
+            Arrays.fill(this.cells, defaultValue);
+         }
+         this.used = 0;
+      }
+   }
+}
@@ -0,0 +1,7 @@
+/*
+   Source of the current time, in milliseconds, for the event scheduler.
+*/
+interface Clock
+{
+   long currentTimeMillis();
+}
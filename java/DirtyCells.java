@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/*
+   Cells whose drawing changed since the renderer last looked, kept as
+   packed positions (see Point.pack) in the order they were marked. A
+   cell may appear more than once. Past MAX_CELLS marks the list stops
+   growing and reports an overflow, and the renderer redraws everything.
+
+   Only cells inside the tracked rectangle are kept, so changes in the
+   parts of a large world nobody is looking at neither cost a mark nor
+   count toward the overflow. Until track is called, every cell is.
+*/
+final class DirtyCells
+{
+   private static final int INITIAL_CAPACITY = 64;
+   private static final int MAX_CELLS = 4096;
+
+   private long[] cells;
+   private int count;
+   private boolean overflowed;
+   private int left;
+   private int top;
+   private int right;
+   private int bottom;
+
+   public DirtyCells()
+   {
+      this.cells = new long[INITIAL_CAPACITY];
+      this.left = Integer.MIN_VALUE;
+      this.top = Integer.MIN_VALUE;
+      this.right = Integer.MAX_VALUE;
+      this.bottom = Integer.MAX_VALUE;
+   }
+
+   /* from now on only cells in the given rectangle are marked */
+   public void track(int left, int top, int cols, int rows)
+   {
+      this.left = left;
+      this.top = top;
+      this.right = left + cols;
+      this.bottom = top + rows;
+   }
+
+   public void mark(int x, int y)
+   {
+      if (this.overflowed || x < this.left || x >= this.right ||
+              y < this.top || y >= this.bottom)
+      {
+         return;
+      }
+
+      if (this.count == MAX_CELLS)
+      {
+         this.overflowed = true;
+         return;
+      }
+
+      if (this.count == this.cells.length)
+      {
+         this.cells = Arrays.copyOf(this.cells, this.count * 2);
+      }
+      this.cells[this.count++] = Point.pack(x, y);
+   }
+
+   public boolean overflowed()
+   {
+      return this.overflowed;
+   }
+
+   public int count()
+   {
+      return this.count;
+   }
+
+   public long get(int i)
+   {
+      return this.cells[i];
+   }
+
+   public void clear()
+   {
+      this.count = 0;
+      this.overflowed = false;
+   }
+}
@@ -0,0 +1,243 @@
+import java.util.Arrays;
+
+/*
+   Multi-source BFS distances from every entity of one target kind, over
+   the cells not blocked by static entities (obstacles, blacksmiths and
+   veins). Moving entities are not walls here: nextStep only takes a free
+   neighbour that is strictly closer, and when every such neighbour is
+   occupied it stays put and the walker falls back to its own path
+   finding for that move. One field is shared by every walker heading
+   for the same kind.
+
+   New targets and freed cells are repaired incrementally by propagating
+   the lower distances outward; removed targets and new walls can only
+   lengthen paths, so those mark the field for a full rebuild on its next
+   use.
+*/
+final class DistanceField
+{
+   public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+   private static final int[] DX = {-1, 1, 0, 0};
+   private static final int[] DY = {0, 0, -1, 1};
+
+   private final WorldModel world;
+   private final EntityKind target;
+   private final int numRows;
+   private final int numCols;
+   private final int[] distance;
+   private int[] queue;
+   private boolean dirty;
+
+   public DistanceField(WorldModel world, EntityKind target)
+   {
+      this.world = world;
+      this.target = target;
+      this.numRows = world.numRows();
+      this.numCols = world.numCols();
+      this.distance = new int[numRows * numCols];
+      this.queue = new int[numRows * numCols];
+      this.dirty = true;
+   }
+
+   public static boolean isStatic(EntityKind kind)
+   {
+      return kind == EntityKind.OBSTACLE || kind == EntityKind.BLACKSMITH ||
+              kind == EntityKind.VEIN;
+   }
+
+   /* true when reads need no rebuild first and so change nothing */
+   public boolean isCurrent()
+   {
+      return !this.dirty;
+   }
+
+   public int distanceAt(Point pos)
+   {
+      return this.distanceAt(pos.x(), pos.y());
+   }
+
+   public int distanceAt(int x, int y)
+   {
+      if (!this.inBounds(x, y))
+      {
+         return UNREACHABLE;
+      }
+
+      this.refresh();
+      return this.distance[y * this.numCols + x];
+   }
+
+   public boolean isReachable(Point pos)
+   {
+      return this.distanceAt(pos) != UNREACHABLE;
+   }
+
+   public boolean isReachable(int x, int y)
+   {
+      return this.distanceAt(x, y) != UNREACHABLE;
+   }
+
+   /*
+      Packed position of the neighbour of (fromX, fromY) that is closest
+      to a target and that canEnter accepts, or of the cell itself when
+      no neighbour gets any closer.
+   */
+   public long nextStep(int fromX, int fromY,
+                        PathFinder.Passability canEnter)
+   {
+      long best = Point.pack(fromX, fromY);
+      int bestDistance = this.distanceAt(fromX, fromY);
+
+      for (int i = 0; i < DX.length; i++)
+      {
+         int x = fromX + DX[i];
+         int y = fromY + DY[i];
+         if (!this.inBounds(x, y))
+         {
+            continue;
+         }
+
+         int d = this.distance[y * this.numCols + x];
+         if (d < bestDistance && d > 0 && canEnter.canEnter(x, y))
+         {
+            best = Point.pack(x, y);
+            bestDistance = d;
+         }
+      }
+
+      return best;
+   }
+
+   public void entityAdded(Entity entity, Point pos)
+   {
+      if (this.dirty)
+      {
+         return;
+      }
+
+      if (entity.kind() == this.target)
+      {
+         int cell = pos.y() * this.numCols + pos.x();
+         this.distance[cell] = 0;
+         this.propagateFrom(cell);
+      }
+      else if (isStatic(entity.kind()))
+      {
+         this.dirty = true;
+      }
+   }
+
+   public void entityRemoved(Entity entity, Point pos)
+   {
+      if (this.dirty)
+      {
+         return;
+      }
+
+      if (entity.kind() == this.target)
+      {
+         this.dirty = true;
+      }
+      else if (isStatic(entity.kind()))
+      {
+         // the freed cell may now offer a shorter way through
+         int cell = pos.y() * this.numCols + pos.x();
+         int best = UNREACHABLE;
+         for (int i = 0; i < DX.length; i++)
+         {
+            int x = pos.x() + DX[i];
+            int y = pos.y() + DY[i];
+            if (this.inBounds(x, y))
+            {
+               int d = this.distance[y * this.numCols + x];
+               if (d != UNREACHABLE)
+               {
+                  best = Math.min(best, d + 1);
+               }
+            }
+         }
+
+         if (best < this.distance[cell])
+         {
+            this.distance[cell] = best;
+            this.propagateFrom(cell);
+         }
+      }
+   }
+
+   private void refresh()
+   {
+      if (!this.dirty)
+      {
+         return;
+      }
+
+      Arrays.fill(this.distance, UNREACHABLE);
+      int tail = 0;
+      for (int cell = 0; cell < this.distance.length; cell++)
+      {
+         Entity occupant = this.world.occupantAt(cell % this.numCols,
+                 cell / this.numCols);
+         if (occupant != null && occupant.kind() == this.target)
+         {
+            this.distance[cell] = 0;
+            this.queue[tail++] = cell;
+         }
+      }
+
+      this.dirty = false;
+      this.expand(tail);
+   }
+
+   private void propagateFrom(int cell)
+   {
+      this.queue[0] = cell;
+      this.expand(1);
+   }
+
+   /*
+      Breadth-first relaxation of the first tail cells in the queue. Each
+      cell is enqueued only when its distance drops, and BFS order means
+      that happens at most once per cell.
+   */
+   private void expand(int tail)
+   {
+      int head = 0;
+      while (head < tail)
+      {
+         int cell = this.queue[head++];
+         int next = this.distance[cell] + 1;
+         int cx = cell % this.numCols;
+         int cy = cell / this.numCols;
+
+         for (int i = 0; i < DX.length; i++)
+         {
+            int x = cx + DX[i];
+            int y = cy + DY[i];
+            if (!this.inBounds(x, y))
+            {
+               continue;
+            }
+
+            int neighbour = y * this.numCols + x;
+            if (next < this.distance[neighbour] && this.isPassable(x, y))
+            {
+               this.distance[neighbour] = next;
+               this.queue[tail++] = neighbour;
+            }
+         }
+      }
+   }
+
+   private boolean isPassable(int x, int y)
+   {
+      Entity occupant = this.world.occupantAt(x, y);
+      return occupant == null || !isStatic(occupant.kind());
+   }
+
+   private boolean inBounds(int x, int y)
+   {
+      return x >= 0 && x < this.numCols && y >= 0 && y < this.numRows;
+   }
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/*
+   Calendar of pending times for one EcsSimulation system: a ring of
+   SLOTS buckets, one per tick, each holding (id, time) entries added
+   when the system's time column for id is set. A tick only visits its
+   own bucket, so a tick with nothing due costs nothing however many
+   entities exist. Times further out than the ring stay in their bucket
+   until the lap they belong to comes round.
+
+   Entries are never removed when an entity is rescheduled or despawned;
+   an entry is live only while its time still matches the column, and
+   stale ones are dropped when their bucket is drained.
+*/
+final class EcsDueList
+{
+   private static final int SLOT_BITS = 12;
+   private static final int SLOTS = 1 << SLOT_BITS;
+   private static final int SLOT_MASK = SLOTS - 1;
+   private static final int INITIAL_BUCKET = 4;
+
+   private final long tickMillis;
+   private long cursor;
+   private final int[][] ids;
+   private final long[][] times;
+   private final int[] sizes;
+   private int[] drainIds;
+   private long[] drainTimes;
+
+   public EcsDueList(long tickMillis)
+   {
+      this.tickMillis = tickMillis;
+      this.ids = new int[SLOTS][];
+      this.times = new long[SLOTS][];
+      this.sizes = new int[SLOTS];
+      this.drainIds = new int[INITIAL_BUCKET];
+      this.drainTimes = new long[INITIAL_BUCKET];
+      this.cursor = Long.MIN_VALUE;
+   }
+
+   public long tickOf(long time)
+   {
+      return Math.floorDiv(time, this.tickMillis);
+   }
+
+   public void add(int id, long time)
+   {
+      if (time == Long.MAX_VALUE)
+      {
+         return;
+      }
+
+      int slot = (int)(this.tickOf(time) & SLOT_MASK);
+      int size = this.sizes[slot];
+      if (this.ids[slot] == null)
+      {
+         this.ids[slot] = new int[INITIAL_BUCKET];
+         this.times[slot] = new long[INITIAL_BUCKET];
+      }
+      else if (size == this.ids[slot].length)
+      {
+         this.ids[slot] = Arrays.copyOf(this.ids[slot], size * 2);
+         this.times[slot] = Arrays.copyOf(this.times[slot], size * 2);
+      }
+      this.ids[slot][size] = id;
+      this.times[slot][size] = time;
+      this.sizes[slot] = size + 1;
+   }
+
+   /*
+      Drains the earliest bucket still holding entries due at or before
+      now, as drain does, and returns 0 once there are none. Call it until
+      it returns 0; entries added meanwhile that are already due are
+      picked up by the later calls. Every bucket is visited at most once
+      per call however far now has moved on, since a bucket's due entries
+      all come out together whatever their lap.
+   */
+   public int drainDue(long now)
+   {
+      long last = this.tickOf(now);
+      this.cursor = Math.max(this.cursor, last - SLOTS + 1);
+      for (; this.cursor <= last; this.cursor++)
+      {
+         int due = this.drain(this.cursor, now);
+         if (due > 0)
+         {
+            return due;
+         }
+      }
+
+      // the current bucket may still fill up before its tick is over
+      this.cursor = last;
+      return 0;
+   }
+
+   /*
+      Moves the entries of tick's bucket whose time is at or before now
+      into an internal buffer and returns how many there are; read them
+      with drainedId and drainedTime. Later entries, including those of
+      a later lap, stay put. Entries added while the buffer is read go to
+      the buckets, so the buffer is stable until the next drain.
+   */
+   private int drain(long tick, long now)
+   {
+      int slot = (int)(tick & SLOT_MASK);
+      int size = this.sizes[slot];
+      if (size == 0)
+      {
+         return 0;
+      }
+
+      if (this.drainIds.length < size)
+      {
+         this.drainIds = new int[Math.max(size, this.drainIds.length * 2)];
+         this.drainTimes = new long[this.drainIds.length];
+      }
+
+      int[] slotIds = this.ids[slot];
+      long[] slotTimes = this.times[slot];
+      int kept = 0;
+      int due = 0;
+      for (int i = 0; i < size; i++)
+      {
+         if (slotTimes[i] > now)
+         {
+            slotIds[kept] = slotIds[i];
+            slotTimes[kept] = slotTimes[i];
+            kept++;
+         }
+         else
+         {
+            this.drainIds[due] = slotIds[i];
+            this.drainTimes[due] = slotTimes[i];
+            due++;
+         }
+      }
+      this.sizes[slot] = kept;
+      return due;
+   }
+
+   public int drainedId(int i)
+   {
+      return this.drainIds[i];
+   }
+
+   public long drainedTime(int i)
+   {
+      return this.drainTimes[i];
+   }
+}
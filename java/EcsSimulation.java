@@ -0,0 +1,382 @@
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+   Data-oriented counterpart of EventScheduler + Entity. Instead of one
+   event object per pending action, every entity carries its next action
+   and next animation times in EcsWorld's columns, and each tick runs two
+   systems over the entities that are due:
+
+      action system     runs the kind's behaviour for each due entity
+      animation system  advances imageIndex for each due animated entity
+
+   Each system finds its due entities through an EcsDueList that gets an
+   entry whenever its column is written, so a tick costs what is due,
+   not what exists. A quake animates QUAKE_ANIMATION_REPEAT_COUNT times,
+   as the object engine's does; other animations repeat until stopped.
+
+   Kind changes (ore to blob, miner full/not full) rewrite the entity's
+   row in place, so ids stay stable and nothing is allocated per entity.
+   Movement is the greedy step the original entities used before the
+   pathfinding work; the A* and HPA* planners stay with WorldModel.
+*/
+final class EcsSimulation
+{
+   /* granularity of the due lists, not of the simulation */
+   private static final long DUE_TICK_MILLIS = 10;
+
+   private final EcsWorld world;
+   private final EcsDueList dueActions;
+   private final EcsDueList dueAnimations;
+   private long actionsExecuted;
+
+   public EcsSimulation(EcsWorld world)
+   {
+      this.world = world;
+      this.dueActions = new EcsDueList(DUE_TICK_MILLIS);
+      this.dueAnimations = new EcsDueList(DUE_TICK_MILLIS);
+      this.actionsExecuted = 0;
+   }
+
+   public EcsWorld world()
+   {
+      return this.world;
+   }
+
+   public long actionsExecuted()
+   {
+      return this.actionsExecuted;
+   }
+
+   /*
+      Copies the entities of a loaded world into a new EcsWorld, repeating
+      the whole map tiles x tiles times, and schedules them from now.
+   */
+   public static EcsSimulation fromWorldModel(WorldModel source, int tiles,
+                                              long now)
+   {
+      EcsSimulation sim = new EcsSimulation(new EcsWorld(
+              source.numRows() * tiles, source.numCols() * tiles));
+
+      for (int ty = 0; ty < tiles; ty++)
+      {
+         for (int tx = 0; tx < tiles; tx++)
+         {
+            int dx = tx * source.numCols();
+            int dy = ty * source.numRows();
+            for (Entity entity : source.entities())
+            {
+               Miner miner = entity instanceof Miner ? (Miner)entity : null;
+               sim.spawn(entity.kind(), entity.position().x() + dx,
+                       entity.position().y() + dy,
+                       miner != null ? miner.resourceLimit() : 0,
+                       miner != null ? miner.resourceCount() : 0,
+                       entity instanceof ActiveEntity ?
+                               ((ActiveEntity)entity).actionPeriod() : 0,
+                       entity instanceof AnimatedEntity ?
+                               ((AnimatedEntity)entity).getAnimationPeriod() : 0,
+                       now);
+            }
+         }
+      }
+
+      return sim;
+   }
+
+   public int spawn(EntityKind kind, int x, int y, int resourceLimit,
+                    int resourceCount, int actionPeriod, int animationPeriod,
+                    long now)
+   {
+      int id = this.world.spawn(kind, x, y, resourceLimit, resourceCount,
+              actionPeriod, animationPeriod);
+      if (id != EcsWorld.NONE)
+      {
+         this.schedule(id, now);
+      }
+      return id;
+   }
+
+   /* runs both systems for everything due at or before now */
+   public void tick(long now)
+   {
+      this.runActions(now);
+      this.runAnimations(now);
+   }
+
+   public Map<EntityKind, Integer> census()
+   {
+      Map<EntityKind, Integer> counts = new EnumMap<>(EntityKind.class);
+      for (EntityKind kind : EntityKind.values())
+      {
+         if (this.world.count(kind) > 0)
+         {
+            counts.put(kind, this.world.count(kind));
+         }
+      }
+      return counts;
+   }
+
+   private void runActions(long now)
+   {
+      EcsWorld w = this.world;
+      int due;
+
+      while ((due = this.dueActions.drainDue(now)) > 0)
+      {
+         for (int i = 0; i < due; i++)
+         {
+            int id = this.dueActions.drainedId(i);
+            long time = this.dueActions.drainedTime(i);
+            if (w.alive[id] && w.nextAction[id] == time)
+            {
+               this.runAction(id, time);
+            }
+         }
+      }
+   }
+
+   private void runAction(int id, long due)
+   {
+      this.actionsExecuted++;
+      switch (this.world.kindOf(id))
+      {
+         case MINER_FULL:
+            this.minerFull(id, due);
+            break;
+         case MINER_NOT_FULL:
+            this.minerNotFull(id, due);
+            break;
+         case ORE:
+            this.ore(id, due);
+            break;
+         case ORE_BLOB:
+            this.oreBlob(id, due);
+            break;
+         case QUAKE:
+            this.world.despawn(id);
+            break;
+         case VEIN:
+            this.vein(id, due);
+            break;
+         default:
+            this.setNextAction(id, Long.MAX_VALUE);
+      }
+   }
+
+   private void runAnimations(long now)
+   {
+      EcsWorld w = this.world;
+      int due;
+
+      while ((due = this.dueAnimations.drainDue(now)) > 0)
+      {
+         for (int i = 0; i < due; i++)
+         {
+            int id = this.dueAnimations.drainedId(i);
+            long time = this.dueAnimations.drainedTime(i);
+            if (w.alive[id] && w.nextAnimation[id] == time)
+            {
+               this.animate(id, time);
+            }
+         }
+      }
+   }
+
+   /* an animationRepeat of 0 repeats forever; 1 is the last frame step */
+   private void animate(int id, long due)
+   {
+      EcsWorld w = this.world;
+
+      w.imageIndex[id] = (w.imageIndex[id] + 1) & Integer.MAX_VALUE;
+      if (w.animationRepeat[id] == 1)
+      {
+         this.setNextAnimation(id, Long.MAX_VALUE);
+         return;
+      }
+      if (w.animationRepeat[id] > 1)
+      {
+         w.animationRepeat[id]--;
+      }
+      this.setNextAnimation(id, due + w.animationPeriod[id]);
+   }
+
+   private void minerFull(int id, long due)
+   {
+      EcsWorld w = this.world;
+      int target = w.findNearest(w.x[id], w.y[id], EntityKind.BLACKSMITH);
+
+      if (target != EcsWorld.NONE && this.stepToward(id, target, false))
+      {
+         w.resourceCount[id] = 0;
+         w.setKind(id, EntityKind.MINER_NOT_FULL);
+      }
+      this.setNextAction(id, due + w.actionPeriod[id]);
+   }
+
+   private void minerNotFull(int id, long due)
+   {
+      EcsWorld w = this.world;
+      int target = w.findNearest(w.x[id], w.y[id], EntityKind.ORE);
+
+      if (target != EcsWorld.NONE && this.stepToward(id, target, false))
+      {
+         w.resourceCount[id]++;
+         w.despawn(target);
+         if (w.resourceCount[id] >= w.resourceLimit[id])
+         {
+            w.setKind(id, EntityKind.MINER_FULL);
+         }
+      }
+      this.setNextAction(id, due + w.actionPeriod[id]);
+   }
+
+   private void ore(int id, long due)
+   {
+      EcsWorld w = this.world;
+
+      w.setKind(id, EntityKind.ORE_BLOB);
+      w.actionPeriod[id] /= Functions.BLOB_PERIOD_SCALE;
+      w.animationPeriod[id] = Functions.BLOB_ANIMATION_MIN +
+              Functions.rand.nextInt(Functions.BLOB_ANIMATION_MAX -
+                      Functions.BLOB_ANIMATION_MIN);
+      w.imageIndex[id] = 0;
+      this.schedule(id, due);
+   }
+
+   private void oreBlob(int id, long due)
+   {
+      EcsWorld w = this.world;
+      int target = w.findNearest(w.x[id], w.y[id], EntityKind.VEIN);
+      long nextPeriod = w.actionPeriod[id];
+
+      if (target != EcsWorld.NONE)
+      {
+         int tx = w.x[target];
+         int ty = w.y[target];
+         if (this.stepToward(id, target, true))
+         {
+            w.despawn(target);
+            this.spawn(EntityKind.QUAKE, tx, ty, 0, 0,
+                    Functions.QUAKE_ACTION_PERIOD,
+                    Functions.QUAKE_ANIMATION_PERIOD, due);
+            nextPeriod += w.actionPeriod[id];
+         }
+      }
+      this.setNextAction(id, due + nextPeriod);
+   }
+
+   private void vein(int id, long due)
+   {
+      EcsWorld w = this.world;
+
+      for (int dy = -Functions.ORE_REACH; dy <= Functions.ORE_REACH; dy++)
+      {
+         for (int dx = -Functions.ORE_REACH; dx <= Functions.ORE_REACH; dx++)
+         {
+            int x = w.x[id] + dx;
+            int y = w.y[id] + dy;
+            if (w.withinBounds(x, y) && !w.isOccupied(x, y))
+            {
+               this.spawn(EntityKind.ORE, x, y, 0, 0,
+                       Functions.ORE_CORRUPT_MIN + Functions.rand.nextInt(
+                               Functions.ORE_CORRUPT_MAX -
+                                       Functions.ORE_CORRUPT_MIN),
+                       0, due);
+               this.setNextAction(id, due + w.actionPeriod[id]);
+               return;
+            }
+         }
+      }
+      this.setNextAction(id, due + w.actionPeriod[id]);
+   }
+
+   /*
+      Returns true when id is already adjacent to target; otherwise takes
+      one greedy step toward it. Blobs may step onto ore, consuming it.
+   */
+   private boolean stepToward(int id, int target, boolean blob)
+   {
+      EcsWorld w = this.world;
+      int x = w.x[id];
+      int y = w.y[id];
+      int tx = w.x[target];
+      int ty = w.y[target];
+
+      if (Math.abs(tx - x) + Math.abs(ty - y) == 1)
+      {
+         return true;
+      }
+
+      int horiz = Integer.signum(tx - x);
+      if (horiz != 0 && this.canEnter(x + horiz, y, blob))
+      {
+         this.stepTo(id, x + horiz, y);
+         return false;
+      }
+
+      int vert = Integer.signum(ty - y);
+      if (vert != 0 && this.canEnter(x, y + vert, blob))
+      {
+         this.stepTo(id, x, y + vert);
+      }
+      return false;
+   }
+
+   private boolean canEnter(int x, int y, boolean blob)
+   {
+      int occupant = this.world.occupant(x, y);
+      return occupant == EcsWorld.NONE ||
+              (blob && this.world.kindOf(occupant) == EntityKind.ORE);
+   }
+
+   private void stepTo(int id, int x, int y)
+   {
+      int occupant = this.world.occupant(x, y);
+      if (occupant != EcsWorld.NONE)
+      {
+         this.world.despawn(occupant);
+      }
+      this.world.move(id, x, y);
+   }
+
+   private void schedule(int id, long now)
+   {
+      EcsWorld w = this.world;
+      EntityKind kind = w.kindOf(id);
+
+      this.setNextAction(id, kind == EntityKind.OBSTACLE ||
+              kind == EntityKind.BLACKSMITH ?
+              Long.MAX_VALUE : now + w.actionPeriod[id]);
+      this.setNextAnimation(id, isAnimated(kind) ?
+              now + w.animationPeriod[id] : Long.MAX_VALUE);
+      w.animationRepeat[id] = kind == EntityKind.QUAKE ?
+              Functions.QUAKE_ANIMATION_REPEAT_COUNT : 0;
+   }
+
+   /* the only writers of the time columns, so the due lists see them all */
+   private void setNextAction(int id, long time)
+   {
+      this.world.nextAction[id] = time;
+      this.dueActions.add(id, time);
+   }
+
+   private void setNextAnimation(int id, long time)
+   {
+      this.world.nextAnimation[id] = time;
+      this.dueAnimations.add(id, time);
+   }
+
+   private static boolean isAnimated(EntityKind kind)
+   {
+      switch (kind)
+      {
+         case MINER_FULL:
+         case MINER_NOT_FULL:
+         case ORE_BLOB:
+         case QUAKE:
+            return true;
+         default:
+            return false;
+      }
+   }
+}
@@ -0,0 +1,335 @@
+import java.util.Arrays;
+
+/*
+   Structure-of-arrays entity storage for the data-oriented engine. An
+   entity is just an index into parallel primitive arrays; there is no
+   per-entity object, and a change of kind is a write to kind[id].
+
+   Occupancy is one int per cell (entity id + 1, 0 when empty), and a
+   per-kind grid of int buckets answers nearest-of-kind queries.
+*/
+final class EcsWorld
+{
+   public static final int NONE = -1;
+
+   private static final int BUCKET_SIZE = 16;
+   private static final int INITIAL_CAPACITY = 1024;
+   private static final EntityKind[] KINDS = EntityKind.values();
+
+   final int numRows;
+   final int numCols;
+
+   // per-entity columns, indexed by entity id
+   byte[] kind;
+   int[] x;
+   int[] y;
+   int[] resourceLimit;
+   int[] resourceCount;
+   int[] actionPeriod;
+   int[] animationPeriod;
+   int[] imageIndex;
+   int[] animationRepeat;
+   long[] nextAction;
+   long[] nextAnimation;
+   boolean[] alive;
+
+   private int capacity;
+   private int highWater;
+   private int liveCount;
+   private int[] freeIds;
+   private int freeCount;
+
+   private final int[] occupancy;
+
+   private final int bucketCols;
+   private final int bucketRows;
+   private final int[][][] buckets;
+   private final int[][] bucketSizes;
+   private final int[] kindCounts;
+
+   public EcsWorld(int numRows, int numCols)
+   {
+      this.numRows = numRows;
+      this.numCols = numCols;
+      this.occupancy = new int[numRows * numCols];
+
+      this.bucketCols = (numCols + BUCKET_SIZE - 1) / BUCKET_SIZE;
+      this.bucketRows = (numRows + BUCKET_SIZE - 1) / BUCKET_SIZE;
+      this.buckets = new int[KINDS.length][][];
+      this.bucketSizes = new int[KINDS.length][];
+      this.kindCounts = new int[KINDS.length];
+
+      this.capacity = 0;
+      this.highWater = 0;
+      this.liveCount = 0;
+      this.freeIds = new int[INITIAL_CAPACITY];
+      this.freeCount = 0;
+      this.grow(INITIAL_CAPACITY);
+   }
+
+   /* entity ids are in [0, highWater) */
+   public int highWater()
+   {
+      return this.highWater;
+   }
+
+   public int liveCount()
+   {
+      return this.liveCount;
+   }
+
+   public int count(EntityKind kind)
+   {
+      return this.kindCounts[kind.ordinal()];
+   }
+
+   public EntityKind kindOf(int id)
+   {
+      return KINDS[this.kind[id]];
+   }
+
+   public boolean withinBounds(int x, int y)
+   {
+      return x >= 0 && x < this.numCols && y >= 0 && y < this.numRows;
+   }
+
+   /* id of the entity at (x, y), or NONE */
+   public int occupant(int x, int y)
+   {
+      if (!this.withinBounds(x, y))
+      {
+         return NONE;
+      }
+      return this.occupancy[y * this.numCols + x] - 1;
+   }
+
+   public boolean isOccupied(int x, int y)
+   {
+      return this.occupant(x, y) != NONE;
+   }
+
+   /*
+      Adds an entity at an empty cell and returns its id, or NONE when the
+      cell is taken or out of bounds.
+   */
+   public int spawn(EntityKind kind, int x, int y, int resourceLimit,
+                    int resourceCount, int actionPeriod, int animationPeriod)
+   {
+      if (!this.withinBounds(x, y) || this.isOccupied(x, y))
+      {
+         return NONE;
+      }
+
+      int id;
+      if (this.freeCount > 0)
+      {
+         id = this.freeIds[--this.freeCount];
+      }
+      else
+      {
+         if (this.highWater == this.capacity)
+         {
+            this.grow(this.capacity * 2);
+         }
+         id = this.highWater++;
+      }
+
+      this.kind[id] = (byte)kind.ordinal();
+      this.x[id] = x;
+      this.y[id] = y;
+      this.resourceLimit[id] = resourceLimit;
+      this.resourceCount[id] = resourceCount;
+      this.actionPeriod[id] = actionPeriod;
+      this.animationPeriod[id] = animationPeriod;
+      this.imageIndex[id] = 0;
+      this.animationRepeat[id] = 0;
+      this.nextAction[id] = Long.MAX_VALUE;
+      this.nextAnimation[id] = Long.MAX_VALUE;
+      this.alive[id] = true;
+
+      this.occupancy[y * this.numCols + x] = id + 1;
+      this.indexAdd(id);
+      this.liveCount++;
+      return id;
+   }
+
+   public void despawn(int id)
+   {
+      if (!this.alive[id])
+      {
+         return;
+      }
+
+      this.indexRemove(id);
+      this.occupancy[this.y[id] * this.numCols + this.x[id]] = 0;
+      this.alive[id] = false;
+      this.nextAction[id] = Long.MAX_VALUE;
+      this.nextAnimation[id] = Long.MAX_VALUE;
+      this.liveCount--;
+
+      if (this.freeCount == this.freeIds.length)
+      {
+         this.freeIds = Arrays.copyOf(this.freeIds, this.freeIds.length * 2);
+      }
+      this.freeIds[this.freeCount++] = id;
+   }
+
+   /* moves id to an empty cell */
+   public void move(int id, int x, int y)
+   {
+      this.indexRemove(id);
+      this.occupancy[this.y[id] * this.numCols + this.x[id]] = 0;
+      this.x[id] = x;
+      this.y[id] = y;
+      this.occupancy[y * this.numCols + x] = id + 1;
+      this.indexAdd(id);
+   }
+
+   /* changes the kind of a live entity in place */
+   public void setKind(int id, EntityKind kind)
+   {
+      this.indexRemove(id);
+      this.kind[id] = (byte)kind.ordinal();
+      this.indexAdd(id);
+   }
+
+   public int findNearest(int px, int py, EntityKind kind)
+   {
+      int k = kind.ordinal();
+      if (this.kindCounts[k] == 0)
+      {
+         return NONE;
+      }
+
+      int[][] ofKind = this.buckets[k];
+      int[] sizes = this.bucketSizes[k];
+      int bx = Math.min(this.bucketCols - 1, Math.max(0, px / BUCKET_SIZE));
+      int by = Math.min(this.bucketRows - 1, Math.max(0, py / BUCKET_SIZE));
+      int maxRing = Math.max(this.bucketCols, this.bucketRows);
+
+      int nearest = NONE;
+      long nearestDistance = Long.MAX_VALUE;
+
+      for (int ring = 0; ring <= maxRing; ring++)
+      {
+         long gap = Math.max(0, (ring - 1) * BUCKET_SIZE + 1);
+         if (nearest != NONE && nearestDistance <= gap * gap)
+         {
+            break;
+         }
+
+         for (int cy = by - ring; cy <= by + ring; cy++)
+         {
+            if (cy < 0 || cy >= this.bucketRows)
+            {
+               continue;
+            }
+
+            int step = (cy == by - ring || cy == by + ring) ? 1 : 2 * ring;
+            for (int cx = bx - ring; cx <= bx + ring; cx += step)
+            {
+               if (cx < 0 || cx >= this.bucketCols)
+               {
+                  continue;
+               }
+
+               int bucket = cy * this.bucketCols + cx;
+               int[] ids = ofKind[bucket];
+               for (int i = 0; i < sizes[bucket]; i++)
+               {
+                  int other = ids[i];
+                  long dx = this.x[other] - px;
+                  long dy = this.y[other] - py;
+                  long distance = dx * dx + dy * dy;
+                  if (distance < nearestDistance)
+                  {
+                     nearest = other;
+                     nearestDistance = distance;
+                  }
+               }
+            }
+         }
+      }
+
+      return nearest;
+   }
+
+   private void indexAdd(int id)
+   {
+      int k = this.kind[id];
+      if (this.buckets[k] == null)
+      {
+         this.buckets[k] = new int[this.bucketCols * this.bucketRows][];
+         this.bucketSizes[k] = new int[this.bucketCols * this.bucketRows];
+      }
+
+      int bucket = this.bucketOf(id);
+      int[] ids = this.buckets[k][bucket];
+      int size = this.bucketSizes[k][bucket];
+      if (ids == null)
+      {
+         ids = new int[4];
+      }
+      else if (size == ids.length)
+      {
+         ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size] = id;
+      this.buckets[k][bucket] = ids;
+      this.bucketSizes[k][bucket] = size + 1;
+      this.kindCounts[k]++;
+   }
+
+   private void indexRemove(int id)
+   {
+      int k = this.kind[id];
+      int bucket = this.bucketOf(id);
+      int[] ids = this.buckets[k][bucket];
+      int size = this.bucketSizes[k][bucket];
+
+      for (int i = 0; i < size; i++)
+      {
+         if (ids[i] == id)
+         {
+            ids[i] = ids[size - 1];
+            this.bucketSizes[k][bucket] = size - 1;
+            this.kindCounts[k]--;
+            return;
+         }
+      }
+   }
+
+   private int bucketOf(int id)
+   {
+      return (this.y[id] / BUCKET_SIZE) * this.bucketCols +
+              this.x[id] / BUCKET_SIZE;
+   }
+
+   private void grow(int newCapacity)
+   {
+      this.kind = Arrays.copyOf(this.kind == null ? new byte[0] : this.kind,
+              newCapacity);
+      this.x = grow(this.x, newCapacity);
+      this.y = grow(this.y, newCapacity);
+      this.resourceLimit = grow(this.resourceLimit, newCapacity);
+      this.resourceCount = grow(this.resourceCount, newCapacity);
+      this.actionPeriod = grow(this.actionPeriod, newCapacity);
+      this.animationPeriod = grow(this.animationPeriod, newCapacity);
+      this.imageIndex = grow(this.imageIndex, newCapacity);
+      this.animationRepeat = grow(this.animationRepeat, newCapacity);
+      this.nextAction = Arrays.copyOf(
+              this.nextAction == null ? new long[0] : this.nextAction,
+              newCapacity);
+      this.nextAnimation = Arrays.copyOf(
+              this.nextAnimation == null ? new long[0] : this.nextAnimation,
+              newCapacity);
+      this.alive = Arrays.copyOf(
+              this.alive == null ? new boolean[0] : this.alive, newCapacity);
+      this.capacity = newCapacity;
+   }
+
+   private static int[] grow(int[] column, int newCapacity)
+   {
+      return Arrays.copyOf(column == null ? new int[0] : column, newCapacity);
+   }
+}
@@ -0,0 +1,144 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+   Dense, array-backed set of entities. Removal swaps the last entity into
+   the freed slot, so iteration walks one contiguous array in a stable,
+   repeatable order. Each entity also gets an integer handle that stays
+   fixed while it is registered (handles are reused after removal), so
+   callers can keep per-entity data in plain arrays indexed by handle.
+*/
+final class EntityRegistry
+   implements Iterable<Entity>
+{
+   private static final int INITIAL_CAPACITY = 64;
+
+   private Entity[] dense;
+   private int size;
+   private int[] sparse;
+   private int[] freeHandles;
+   private int freeCount;
+   private int nextHandle;
+
+   public EntityRegistry()
+   {
+      this.dense = new Entity[INITIAL_CAPACITY];
+      this.size = 0;
+      this.sparse = new int[INITIAL_CAPACITY];
+      this.freeHandles = new int[INITIAL_CAPACITY];
+      this.freeCount = 0;
+      this.nextHandle = 0;
+   }
+
+   public int size()
+   {
+      return this.size;
+   }
+
+   /* one more than the largest handle ever handed out */
+   public int handleCapacity()
+   {
+      return this.nextHandle;
+   }
+
+   public Entity get(int index)
+   {
+      return this.dense[index];
+   }
+
+   public Entity byHandle(int handle)
+   {
+      if (handle < 0 || handle >= this.nextHandle || this.sparse[handle] < 0)
+      {
+         return null;
+      }
+      return this.dense[this.sparse[handle]];
+   }
+
+   public boolean contains(Entity entity)
+   {
+      int handle = entity.handle();
+      return handle >= 0 && this.byHandle(handle) == entity;
+   }
+
+   public boolean add(Entity entity)
+   {
+      if (this.contains(entity))
+      {
+         return false;
+      }
+
+      int handle;
+      if (this.freeCount > 0)
+      {
+         handle = this.freeHandles[--this.freeCount];
+      }
+      else
+      {
+         handle = this.nextHandle++;
+         if (handle == this.sparse.length)
+         {
+            this.sparse = Arrays.copyOf(this.sparse, this.sparse.length * 2);
+         }
+      }
+
+      if (this.size == this.dense.length)
+      {
+         this.dense = Arrays.copyOf(this.dense, this.dense.length * 2);
+      }
+
+      this.sparse[handle] = this.size;
+      this.dense[this.size++] = entity;
+      entity.setHandle(handle);
+      return true;
+   }
+
+   public boolean remove(Entity entity)
+   {
+      if (!this.contains(entity))
+      {
+         return false;
+      }
+
+      int handle = entity.handle();
+      int index = this.sparse[handle];
+      Entity last = this.dense[--this.size];
+
+      this.dense[index] = last;
+      this.sparse[last.handle()] = index;
+      this.dense[this.size] = null;
+
+      this.sparse[handle] = -1;
+      if (this.freeCount == this.freeHandles.length)
+      {
+         this.freeHandles = Arrays.copyOf(this.freeHandles,
+                 this.freeHandles.length * 2);
+      }
+      this.freeHandles[this.freeCount++] = handle;
+      entity.setHandle(-1);
+      return true;
+   }
+
+   public Iterator<Entity> iterator()
+   {
+      return new Iterator<Entity>()
+      {
+         private int next = 0;
+
+         public boolean hasNext()
+         {
+            return this.next < EntityRegistry.this.size;
+         }
+
+         public Entity next()
+         {
+            if (!this.hasNext())
+            {
+               throw new NoSuchElementException();
+            }
+            return EntityRegistry.this.dense[this.next++];
+         }
+      };
+   }
+}
@@ -3,6 +3,16 @@ final class Event
    private Action action;
    private long time;
    private Entity entity;
+   private long sequence;
+
+   /* slot of this event in the owning EventHeap, -1 when not queued */
+   int heapIndex = -1;
+
+   /* bucket links used by TimingWheel, wheelLevel is -1 when not queued */
+   int wheelLevel = -1;
+   int wheelSlot;
+   Event wheelPrev;
+   Event wheelNext;
 
    public Action action() {
       return action;
@@ -16,10 +26,15 @@ final class Event
       return entity;
    }
 
-   public Event(Action action, long time, Entity entity)
+   public long sequence() {
+      return sequence;
+   }
+
+   public Event(Action action, long time, Entity entity, long sequence)
    {
       this.action = action;
       this.time = time;
       this.entity = entity;
+      this.sequence = sequence;
    }
 }
@@ -5,6 +5,13 @@ final class EventComparator
 {
    public int compare(Event lft, Event rht)
    {
-      return (int)(lft.time() - rht.time());
+      int byTime = Long.compare(lft.time(), rht.time());
+      if (byTime != 0)
+      {
+         return byTime;
+      }
+
+      // events due at the same time run in the order they were scheduled
+      return Long.compare(lft.sequence(), rht.sequence());
    }
 }
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+   Binary min-heap of events where every event records its own slot
+   (Event.heapIndex), so an arbitrary event can be removed in O(log n)
+   instead of the linear search done by PriorityQueue.remove.
+*/
+final class EventHeap
+   implements EventQueue
+{
+   private static final int INITIAL_CAPACITY = 64;
+
+   private Event[] heap;
+   private int size;
+   private Comparator<Event> comparator;
+
+   public EventHeap(Comparator<Event> comparator)
+   {
+      this.heap = new Event[INITIAL_CAPACITY];
+      this.size = 0;
+      this.comparator = comparator;
+   }
+
+   public int size()
+   {
+      return this.size;
+   }
+
+   public boolean isEmpty()
+   {
+      return this.size == 0;
+   }
+
+   public Event peek()
+   {
+      return this.size == 0 ? null : this.heap[0];
+   }
+
+   public void add(Event event)
+   {
+      if (event.heapIndex >= 0)
+      {
+         throw new IllegalArgumentException("event already queued");
+      }
+
+      if (this.size == this.heap.length)
+      {
+         this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+      }
+
+      this.place(event, this.size);
+      this.size++;
+      this.siftUp(event.heapIndex);
+   }
+
+   public Event pollBefore(long time)
+   {
+      if (this.size == 0 || this.heap[0].time() >= time)
+      {
+         return null;
+      }
+
+      return this.poll();
+   }
+
+   public long nextTime()
+   {
+      return this.size == 0 ? Long.MAX_VALUE : this.heap[0].time();
+   }
+
+   public Event poll()
+   {
+      if (this.size == 0)
+      {
+         return null;
+      }
+
+      Event first = this.heap[0];
+      this.removeAt(0);
+      return first;
+   }
+
+   public boolean remove(Event event)
+   {
+      int index = event.heapIndex;
+      if (index < 0 || index >= this.size || this.heap[index] != event)
+      {
+         return false;
+      }
+
+      this.removeAt(index);
+      return true;
+   }
+
+   private void removeAt(int index)
+   {
+      Event removed = this.heap[index];
+      this.size--;
+
+      if (index != this.size)
+      {
+         Event last = this.heap[this.size];
+         this.heap[this.size] = null;
+         this.place(last, index);
+         this.siftDown(index);
+         if (this.heap[index] == last)
+         {
+            this.siftUp(index);
+         }
+      }
+      else
+      {
+         this.heap[index] = null;
+      }
+
+      removed.heapIndex = -1;
+   }
+
+   private void siftUp(int index)
+   {
+      Event event = this.heap[index];
+
+      while (index > 0)
+      {
+         int parent = (index - 1) >>> 1;
+         if (this.comparator.compare(event, this.heap[parent]) >= 0)
+         {
+            break;
+         }
+         this.place(this.heap[parent], index);
+         index = parent;
+      }
+
+      this.place(event, index);
+   }
+
+   private void siftDown(int index)
+   {
+      Event event = this.heap[index];
+      int half = this.size >>> 1;
+
+      while (index < half)
+      {
+         int child = 2 * index + 1;
+         int right = child + 1;
+         if (right < this.size &&
+                 this.comparator.compare(this.heap[right], this.heap[child]) < 0)
+         {
+            child = right;
+         }
+         if (this.comparator.compare(event, this.heap[child]) <= 0)
+         {
+            break;
+         }
+         this.place(this.heap[child], index);
+         index = child;
+      }
+
+      this.place(event, index);
+   }
+
+   private void place(Event event, int index)
+   {
+      this.heap[index] = event;
+      event.heapIndex = index;
+   }
+}
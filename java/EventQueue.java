@@ -0,0 +1,19 @@
+/*
+   Backing store for the events of an EventScheduler.
+*/
+interface EventQueue
+{
+   void add(Event event);
+
+   boolean remove(Event event);
+
+   /* removes and returns the next event due strictly before time, or null */
+   Event pollBefore(long time);
+
+   /* time of the earliest queued event, Long.MAX_VALUE when empty */
+   long nextTime();
+
+   int size();
+
+   boolean isEmpty();
+}
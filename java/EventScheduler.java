@@ -2,34 +2,187 @@ import java.util.*;
 
 final class EventScheduler
 {
-   private PriorityQueue<Event> eventQueue;
+   private EventQueue eventQueue;
    private Map<Entity, List<Event>> pendingEvents;
    private double timeScale;
+   private Clock clock;
+   private long nextSequence;
+   private boolean derivedAnimation;
+   private Map<EntityKind, Map<ActiveEntity, Action>> parked;
+   private int parkedCount;
+   private PathFinder.Passability emptyOrParkedCells;
+   private RegionExecutor regions;
 
    public EventScheduler(double timeScale)
    {
-      this.eventQueue = new PriorityQueue<>(new EventComparator());
+      this(timeScale, new EventHeap(new EventComparator()), new SystemClock());
+   }
+
+   public EventScheduler(double timeScale, EventQueue eventQueue, Clock clock)
+   {
+      this.eventQueue = eventQueue;
       this.pendingEvents = new HashMap<>();
       this.timeScale = timeScale;
+      this.clock = clock;
+      this.nextSequence = 0;
+      this.parked = new EnumMap<>(EntityKind.class);
+      this.parkedCount = 0;
+   }
+
+   public Clock clock()
+   {
+      return this.clock;
+   }
+
+   /*
+      When set, looping animations are not scheduled; entities derive
+      their frame from the time since they started animating instead.
+      Finite animations such as the quake's still run on events.
+   */
+   public void setDerivedAnimation(boolean derivedAnimation)
+   {
+      this.derivedAnimation = derivedAnimation;
+   }
+
+   /*
+      Random numbers for an action at pos: the shared stream, or the
+      stream of the region around pos once a RegionExecutor runs the
+      events.
+   */
+   public Random randomAt(Point pos)
+   {
+      return this.regions == null ? Functions.rand :
+              this.regions.randomAt(pos);
+   }
+
+   void setRegions(RegionExecutor regions)
+   {
+      this.regions = regions;
+   }
+
+   public long nextEventTime()
+   {
+      return this.eventQueue.nextTime();
    }
 
    public void scheduleEvent(Entity entity, Action action, long afterPeriod)
    {
-      long time = System.currentTimeMillis() +
-              (long)(afterPeriod * this.timeScale);
-      Event event = new Event(action, time, entity);
+      this.scheduleEventAfter(this.clock.currentTimeMillis(), entity, action,
+              afterPeriod);
+   }
+
+   /* as above, counting the period from start instead of from now */
+   void scheduleEventAfter(long start, Entity entity, Action action,
+                           long afterPeriod)
+   {
+      long time = start + (long)(afterPeriod * this.timeScale);
+      Event event = new Event(action, time, entity, this.nextSequence++);
 
       this.eventQueue.add(event);
 
       // update list of pending events for the given entity
-      List<Event> pending = this.pendingEvents.getOrDefault(entity,
-              new LinkedList<>());
-      pending.add(event);
-      this.pendingEvents.put(entity, pending);
+      this.pendingEvents.computeIfAbsent(entity, e -> new ArrayList<>(2))
+              .add(event);
+   }
+
+   /*
+      Has world wake parked entities whenever something they await may
+      have become available. Parking relies on it.
+   */
+   public void watch(WorldModel world)
+   {
+      world.addAvailabilityListener(this::wakeWaiters);
+      this.emptyOrParkedCells = (x, y) ->
+      {
+         Entity occupant = world.occupantAt(x, y);
+         return occupant == null || this.isParked(occupant);
+      };
+   }
+
+   /*
+      Cells of the watched world that are empty or hold a parked entity.
+      A parked entity is going nowhere, so rather than let it wall others
+      in, whoever needs its cell may trade places with it (see
+      WorldModel.swapEntities). Null until a world is watched.
+   */
+   public PathFinder.Passability emptyOrParkedCells()
+   {
+      return this.emptyOrParkedCells;
+   }
+
+   /*
+      Takes an entity whose target query came back empty off the queue
+      until the watched world reports the awaited kind available; it
+      then runs action after its usual action period. Any other events
+      it has, such as its animation, keep running.
+   */
+   public void park(ActiveEntity entity, EntityKind awaited, Action action)
+   {
+      Map<ActiveEntity, Action> waiting = this.parked.computeIfAbsent(awaited,
+              kind -> new LinkedHashMap<>());
+      if (waiting.put(entity, action) == null)
+      {
+         this.parkedCount++;
+      }
+   }
+
+   public int parkedCount()
+   {
+      return this.parkedCount;
+   }
+
+   public boolean isParked(Entity entity)
+   {
+      for (Map<ActiveEntity, Action> waiting : this.parked.values())
+      {
+         if (waiting.containsKey(entity))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private void wakeWaiters(EntityKind kind)
+   {
+      if (this.parkedCount == 0)
+      {
+         return;
+      }
+
+      Map<ActiveEntity, Action> waiting = this.parked.remove(kind);
+      if (waiting == null)
+      {
+         return;
+      }
+
+      this.parkedCount -= waiting.size();
+      for (Map.Entry<ActiveEntity, Action> entry : waiting.entrySet())
+      {
+         this.scheduleEvent(entry.getKey(), entry.getValue(),
+                 entry.getKey().actionPeriod());
+      }
+   }
+
+   private void unpark(Entity entity)
+   {
+      for (Map<ActiveEntity, Action> waiting : this.parked.values())
+      {
+         if (waiting.remove(entity) != null)
+         {
+            this.parkedCount--;
+            return;
+         }
+      }
    }
 
    public void unscheduleAllEvents(Entity entity)
    {
+      if (this.parkedCount > 0)
+      {
+         this.unpark(entity);
+      }
+
       List<Event> pending = this.pendingEvents.remove(entity);
 
       if (pending != null)
@@ -47,73 +200,62 @@ final class EventScheduler
 
       if (pending != null)
       {
-         pending.remove(event);
+         // identity search; an entity rarely has more than two events
+         for (int i = 0; i < pending.size(); i++)
+         {
+            if (pending.get(i) == event)
+            {
+               pending.remove(i);
+               break;
+            }
+         }
       }
    }
 
-   public void updateOnTime(long time)
+   public int updateOnTime(long time)
    {
-      while (!this.eventQueue.isEmpty() &&
-              this.eventQueue.peek().time() < time)
+      int executed = 0;
+
+      Event next;
+      while ((next = this.pollDue(time)) != null)
       {
-         Event next = this.eventQueue.poll();
+         next.action().executeAction(this);
+         executed++;
+      }
 
-         removePendingEvent(next);
+      return executed;
+   }
 
-         next.action().executeAction(this);
+   /* takes the next event due before time off the queue, or null */
+   Event pollDue(long time)
+   {
+      Event next = this.eventQueue.pollBefore(time);
+      if (next != null)
+      {
+         removePendingEvent(next);
       }
+      return next;
    }
 
-   public void scheduleActions(Entity entity, WorldModel world, ImageStore imageStore)
+   /* called by AnimatedEntity.scheduleActions */
+   void scheduleAnimation(AnimatedEntity entity, WorldModel world,
+      int repeatCount)
    {
-      switch (entity.kind())
+      if (this.derivedAnimation && repeatCount == 0)
       {
-         case MINER_FULL:
-            this.scheduleEvent(entity,
-                    new Activity(entity, world, imageStore),
-                    entity.actionPeriod());
-            this.scheduleEvent(entity, new Animation(entity, 0),
-                    entity.getAnimationPeriod());
-            break;
-
-         case MINER_NOT_FULL:
-            this.scheduleEvent(entity,
-                    new Activity(entity, world, imageStore),
-                    entity.actionPeriod());
-            this.scheduleEvent(entity,
-                    new Animation(entity, 0), entity.getAnimationPeriod());
-            break;
-
-         case ORE:
-            this.scheduleEvent(entity,
-                    new Activity(entity, world, imageStore),
-                    entity.actionPeriod());
-            break;
-
-         case ORE_BLOB:
-            this.scheduleEvent(entity,
-                    new Activity(entity, world, imageStore),
-                    entity.actionPeriod());
-            this.scheduleEvent(entity,
-                    new Animation(entity, 0), entity.getAnimationPeriod());
-            break;
-
-         case QUAKE:
-            this.scheduleEvent(entity,
-                    new Activity(entity, world, imageStore),
-                    entity.actionPeriod());
-            this.scheduleEvent(entity,
-                    new Animation(entity, Functions.QUAKE_ANIMATION_REPEAT_COUNT),
-                    entity.getAnimationPeriod());
-            break;
-
-         case VEIN:
-            this.scheduleEvent(entity,
-                    new Activity(entity, world, imageStore),
-                    entity.actionPeriod());
-            break;
-
-         default:
+         entity.startDerivedAnimation(this.clock.currentTimeMillis(),
+                 Math.max(1, (long)(entity.getAnimationPeriod() *
+                         this.timeScale)));
       }
+      else
+      {
+         this.scheduleEvent(entity, new Animation(entity, world, repeatCount),
+                 entity.getAnimationPeriod());
+      }
+   }
+
+   public void scheduleActions(Entity entity, WorldModel world)
+   {
+      entity.scheduleActions(this, world);
    }
 }
@@ -1,11 +1,6 @@
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Scanner;
-import processing.core.PImage;
-import processing.core.PApplet;
 
 final class Functions
 {
@@ -29,12 +24,6 @@ final class Functions
    public static final int QUAKE_ANIMATION_PERIOD = 100;
    public static final int QUAKE_ANIMATION_REPEAT_COUNT = 10;
 
-   private static final int COLOR_MASK = 0xffffff;
-   private static final int KEYED_IMAGE_MIN = 5;
-   private static final int KEYED_RED_IDX = 2;
-   private static final int KEYED_GREEN_IDX = 3;
-   private static final int KEYED_BLUE_IDX = 4;
-
    private static final int PROPERTY_KEY = 0;
 
    private static final String BGND_KEY = "background";
@@ -78,621 +67,14 @@ final class Functions
    private static final int VEIN_ROW = 3;
    private static final int VEIN_ACTION_PERIOD = 4;
 
-
-   /*public static PImage getCurrentImage(Object entity)
-   {
-      if (entity instanceof Background)
-      {
-         return ((Background)entity).images
-            .get(((Background)entity).imageIndex);
-      }
-      else if (entity instanceof Entity)
-      {
-         return ((Entity)entity).images.get(((Entity)entity).imageIndex);
-      }
-      else
-      {
-         throw new UnsupportedOperationException(
-            String.format("getCurrentImage not supported for %s",
-            entity));
-      }
-   }
-
-   public static int getAnimationPeriod(Entity entity)
-   {
-      switch (entity.kind)
-      {
-      case MINER_FULL:
-      case MINER_NOT_FULL:
-      case ORE_BLOB:
-      case QUAKE:
-         return entity.animationPeriod;
-      default:
-         throw new UnsupportedOperationException(
-            String.format("getAnimationPeriod not supported for %s",
-            entity.kind));
-      }
-   }
-
-   public static void nextImage(Entity entity)
-   {
-      entity.imageIndex = (entity.imageIndex + 1) % entity.images.size();
-   }
-
-   public static void executeAction(Action action, EventScheduler scheduler)
-   {
-      switch (action.kind)
-      {
-      case ACTIVITY:
-         executeActivityAction(action, scheduler);
-         break;
-
-      case ANIMATION:
-         executeAnimationAction(action, scheduler);
-         break;
-      }
-   }
-
-   public static void executeAnimationAction(Action action,
-      EventScheduler scheduler)
-   {
-      nextImage(action.entity);
-
-      if (action.repeatCount != 1)
-      {
-         scheduleEvent(scheduler, action.entity,
-            createAnimationAction(action.entity,
-               Math.max(action.repeatCount - 1, 0)),
-            getAnimationPeriod(action.entity));
-      }
-   }
-
-   public static void executeActivityAction(Action action,
-      EventScheduler scheduler)
-   {
-      switch (action.entity.kind)
-      {
-      case MINER_FULL:
-         executeMinerFullActivity(action.entity, action.world,
-            action.imageStore, scheduler);
-         break;
-
-      case MINER_NOT_FULL:
-         executeMinerNotFullActivity(action.entity, action.world,
-            action.imageStore, scheduler);
-         break;
-
-      case ORE:
-         executeOreActivity(action.entity, action.world, action.imageStore,
-            scheduler);
-         break;
-
-      case ORE_BLOB:
-         executeOreBlobActivity(action.entity, action.world,
-            action.imageStore, scheduler);
-         break;
-
-      case QUAKE:
-         executeQuakeActivity(action.entity, action.world, action.imageStore,
-            scheduler);
-         break;
-
-      case VEIN:
-         executeVeinActivity(action.entity, action.world, action.imageStore,
-            scheduler);
-         break;
-
-      default:
-         throw new UnsupportedOperationException(
-            String.format("executeActivityAction not supported for %s",
-            action.entity.kind));
-      }
-   }
-
-   public static void executeMinerFullActivity(Entity entity, WorldModel world,
-      ImageStore imageStore, EventScheduler scheduler)
-   {
-      Optional<Entity> fullTarget = findNearest(world, entity.position,
-         EntityKind.BLACKSMITH);
-
-      if (fullTarget.isPresent() &&
-         moveToFull(entity, world, fullTarget.get(), scheduler))
-      {
-         transformFull(entity, world, scheduler, imageStore);
-      }
-      else
-      {
-         scheduleEvent(scheduler, entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-      }
-   }
-
-   public static void executeMinerNotFullActivity(Entity entity,
-      WorldModel world, ImageStore imageStore, EventScheduler scheduler)
-   {
-      Optional<Entity> notFullTarget = findNearest(world, entity.position,
-         EntityKind.ORE);
-
-      if (!notFullTarget.isPresent() ||
-         !moveToNotFull(entity, world, notFullTarget.get(), scheduler) ||
-         !transformNotFull(entity, world, scheduler, imageStore))
-      {
-         scheduleEvent(scheduler, entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-      }
-   }
-
-   public static void executeOreActivity(Entity entity, WorldModel world,
-      ImageStore imageStore, EventScheduler scheduler)
-   {
-      Point pos = entity.position;  // store current position before removing
-
-      world.removeEntity(entity);
-      unscheduleAllEvents(scheduler, entity);
-
-      Entity blob = createOreBlob(entity.id + BLOB_ID_SUFFIX,
-         pos, entity.actionPeriod / BLOB_PERIOD_SCALE,
-         BLOB_ANIMATION_MIN +
-            rand.nextInt(BLOB_ANIMATION_MAX - BLOB_ANIMATION_MIN),
-         imageStore.getImageList(BLOB_KEY));
-
-      world.addEntity(blob);
-      scheduleActions(blob, scheduler, world, imageStore);
-   }
-
-   public static void executeOreBlobActivity(Entity entity, WorldModel world,
-      ImageStore imageStore, EventScheduler scheduler)
-   {
-      Optional<Entity> blobTarget = findNearest(world,
-         entity.position, EntityKind.VEIN);
-      long nextPeriod = entity.actionPeriod;
-
-      if (blobTarget.isPresent())
-      {
-         Point tgtPos = blobTarget.get().position;
-
-         if (moveToOreBlob(entity, world, blobTarget.get(), scheduler))
-         {
-            Entity quake = createQuake(tgtPos,
-               imageStore.getImageList(QUAKE_KEY));
-
-            world.addEntity(quake);
-            nextPeriod += entity.actionPeriod;
-            scheduleActions(quake, scheduler, world, imageStore);
-         }
-      }
-
-      scheduleEvent(scheduler, entity,
-         createActivityAction(entity, world, imageStore),
-         nextPeriod);
-   }
-
-   public static void executeQuakeActivity(Entity entity, WorldModel world,
-      ImageStore imageStore, EventScheduler scheduler)
-   {
-      unscheduleAllEvents(scheduler, entity);
-      world.removeEntity(entity);
-   }
-
-   public static void executeVeinActivity(Entity entity, WorldModel world,
-      ImageStore imageStore, EventScheduler scheduler)
-   {
-      Optional<Point> openPt = findOpenAround(world, entity.position);
-
-      if (openPt.isPresent())
-      {
-         Entity ore = createOre(ORE_ID_PREFIX + entity.id,
-            openPt.get(), ORE_CORRUPT_MIN +
-               rand.nextInt(ORE_CORRUPT_MAX - ORE_CORRUPT_MIN),
-            imageStore.getImageList(ORE_KEY));
-         world.addEntity(ore);
-         scheduleActions(ore, scheduler, world, imageStore);
-      }
-
-      scheduleEvent(scheduler, entity,
-         createActivityAction(entity, world, imageStore),
-         entity.actionPeriod);
-   }
-
-   public static void scheduleActions(Entity entity, EventScheduler scheduler,
-      WorldModel world, ImageStore imageStore)
-   {
-      switch (entity.kind)
-      {
-      case MINER_FULL:
-         scheduler.scheduleEvent(entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-         scheduler.scheduleEvent(entity, createAnimationAction(entity, 0),
-            entity.getAnimationPeriod());
-         break;
-
-      case MINER_NOT_FULL:
-         scheduler.scheduleEvent(entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-         scheduler.scheduleEvent(entity,
-            createAnimationAction(entity, 0), entity.getAnimationPeriod());
-         break;
-
-      case ORE:
-         scheduler.scheduleEvent(entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-         break;
-
-      case ORE_BLOB:
-         scheduler.scheduleEvent(entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-         scheduler.scheduleEvent(entity,
-            createAnimationAction(entity, 0), entity.getAnimationPeriod());
-         break;
-
-      case QUAKE:
-         scheduler.scheduleEvent(entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-         scheduler.scheduleEvent(entity,
-            createAnimationAction(entity, QUAKE_ANIMATION_REPEAT_COUNT),
-            entity.getAnimationPeriod());
-         break;
-
-      case VEIN:
-         scheduler.scheduleEvent(entity,
-            createActivityAction(entity, world, imageStore),
-            entity.actionPeriod);
-         break;
-
-      default:
-      }
-   }
-
-   public static boolean transformNotFull(Entity entity, WorldModel world,
-      EventScheduler scheduler, ImageStore imageStore)
-   {
-      if (entity.resourceCount >= entity.resourceLimit)
-      {
-         Entity miner = createMinerFull(entity.id, entity.resourceLimit,
-            entity.position, entity.actionPeriod, entity.animationPeriod,
-            entity.images);
-
-         world.removeEntity(entity);
-         scheduler.unscheduleAllEvents(entity);
-
-         world.addEntity(miner);
-         scheduler.scheduleActions(miner, world, imageStore);
-
-         return true;
-      }
-
-      return false;
-   }
-
-   public static void transformFull(Entity entity, WorldModel world,
-      EventScheduler scheduler, ImageStore imageStore)
-   {
-      Entity miner = createMinerNotFull(entity.id, entity.resourceLimit,
-         entity.position, entity.actionPeriod, entity.animationPeriod,
-         entity.images);
-
-      world.removeEntity(entity);
-      scheduler.unscheduleAllEvents(entity);
-
-      world.addEntity(miner);
-      scheduler.scheduleActions(miner, world, imageStore);
-   }
-   */
-   /*public static boolean moveToNotFull(Entity miner, WorldModel world,
-      Entity target, EventScheduler scheduler)
-   {
-      if (miner.position.adjacent(target.position))
-      {
-         miner.resourceCount += 1;
-         world.removeEntity(target);
-         scheduler.unscheduleAllEvents(target);
-
-         return true;
-      }
-      else
-      {
-         Point nextPos = miner.nextPositionMiner(world, target.position);
-
-         if (!miner.position.equals(nextPos))
-         {
-            Optional<Entity> occupant = world.getOccupant(nextPos);
-            if (occupant.isPresent())
-            {
-               scheduler.unscheduleAllEvents(occupant.get());
-            }
-
-            world.moveEntity(miner, nextPos);
-         }
-         return false;
-      }
-   }
-
-   public static boolean moveToFull(Entity miner, WorldModel world,
-      Entity target, EventScheduler scheduler)
-   {
-      if (miner.position.adjacent(target.position))
-      {
-         return true;
-      }
-      else
-      {
-         Point nextPos = miner.nextPositionMiner(world, target.position);
-
-         if (!miner.position.equals(nextPos))
-         {
-            Optional<Entity> occupant = world.getOccupant(nextPos);
-            if (occupant.isPresent())
-            {
-               scheduler.unscheduleAllEvents(occupant.get());
-            }
-
-            world.moveEntity(miner, nextPos);
-         }
-         return false;
-      }
-   }
-
-   public static boolean moveToOreBlob(Entity blob, WorldModel world,
-      Entity target, EventScheduler scheduler)
-   {
-      if (blob.position.adjacent(target.position))
-      {
-         world.removeEntity(target);
-         scheduler.unscheduleAllEvents(target);
-         return true;
-      }
-      else
-      {
-         Point nextPos = blob.nextPositionOreBlob(world, target.position);
-
-         if (!blob.position.equals(nextPos))
-         {
-            Optional<Entity> occupant = world.getOccupant(nextPos);
-            if (occupant.isPresent())
-            {
-               scheduler.unscheduleAllEvents(occupant.get());
-            }
-
-            world.moveEntity(blob, nextPos);
-         }
-         return false;
-      }
-   }*/
-   /*
-   public static Point nextPositionMiner(Entity entity, WorldModel world,
-      Point destPos)
-   {
-      int horiz = Integer.signum(destPos.x - entity.position.x);
-      Point newPos = new Point(entity.position.x + horiz,
-         entity.position.y);
-
-      if (horiz == 0 || world.isOccupied(newPos))
-      {
-         int vert = Integer.signum(destPos.y - entity.position.y);
-         newPos = new Point(entity.position.x,
-            entity.position.y + vert);
-
-         if (vert == 0 || world.isOccupied(newPos))
-         {
-            newPos = entity.position;
-         }
-      }
-
-      return newPos;
-   }
-
-   public static Point nextPositionOreBlob(Entity entity, WorldModel world,
-      Point destPos)
-   {
-      int horiz = Integer.signum(destPos.x - entity.position.x);
-      Point newPos = new Point(entity.position.x + horiz,
-         entity.position.y);
-
-      Optional<Entity> occupant = world.getOccupant(newPos);
-
-      if (horiz == 0 ||
-         (occupant.isPresent() && !(occupant.get().kind == EntityKind.ORE)))
-      {
-         int vert = Integer.signum(destPos.y - entity.position.y);
-         newPos = new Point(entity.position.x, entity.position.y + vert);
-         occupant = world.getOccupant(newPos);
-
-         if (vert == 0 ||
-            (occupant.isPresent() && !(occupant.get().kind == EntityKind.ORE)))
-         {
-            newPos = entity.position;
-         }
-      }
-
-      return newPos;
-   }*/
-   /*
-   public static boolean adjacent(Point p1, Point p2)
-   {
-      return (p1.x == p2.x && Math.abs(p1.y - p2.y) == 1) ||
-         (p1.y == p2.y && Math.abs(p1.x - p2.x) == 1);
-   }
-   */
-   /*public static Optional<Point> findOpenAround(WorldModel world, Point pos)
-   {
-      for (int dy = -ORE_REACH; dy <= ORE_REACH; dy++)
-      {
-         for (int dx = -ORE_REACH; dx <= ORE_REACH; dx++)
-         {
-            Point newPt = new Point(pos.x + dx, pos.y + dy);
-            if (world.withinBounds(newPt) &&
-               !world.isOccupied(newPt))
-            {
-               return Optional.of(newPt);
-            }
-         }
-      }
-
-      return Optional.empty();
-   }*/
-   /*
-   public static void scheduleEvent(EventScheduler scheduler,
-      Entity entity, Action action, long afterPeriod)
-   {
-      long time = System.currentTimeMillis() +
-         (long)(afterPeriod * scheduler.timeScale);
-      Event event = new Event(action, time, entity);
-
-      scheduler.eventQueue.add(event);
-
-      // update list of pending events for the given entity
-      List<Event> pending = scheduler.pendingEvents.getOrDefault(entity,
-         new LinkedList<>());
-      pending.add(event);
-      scheduler.pendingEvents.put(entity, pending);
-   }
-
-   public static void unscheduleAllEvents(EventScheduler scheduler,
-      Entity entity)
-   {
-      List<Event> pending = scheduler.pendingEvents.remove(entity);
-
-      if (pending != null)
-      {
-         for (Event event : pending)
-         {
-            scheduler.eventQueue.remove(event);
-         }
-      }
-   }
-   */
-   /*public static void removePendingEvent(EventScheduler scheduler,
-      Event event)
-   {
-      List<Event> pending = scheduler.pendingEvents.get(event.entity);
-
-      if (pending != null)
-      {
-         pending.remove(event);
-      }
-   }
-
-   public static void updateOnTime(EventScheduler scheduler, long time)
-   {
-      while (!scheduler.eventQueue.isEmpty() &&
-         scheduler.eventQueue.peek().time < time)
-      {
-         Event next = scheduler.eventQueue.poll();
-         
-         removePendingEvent(scheduler, next);
-
-         next.action.executeAction(scheduler);
-      }
-   }*/
-   /*
-   public static List<PImage> getImageList(ImageStore imageStore, String key)
-   {
-      return imageStore.images.getOrDefault(key, imageStore.defaultImages);
-   }
-   */
-   public static void loadImages(Scanner in, ImageStore imageStore,
-      PApplet screen)
-   {
-      int lineNumber = 0;
-      while (in.hasNextLine())
-      {
-         try
-         {
-            processImageLine(imageStore.images(), in.nextLine(), screen);
-         }
-         catch (NumberFormatException e)
-         {
-            System.out.println(String.format("Image format error on line %d",
-               lineNumber));
-         }
-         lineNumber++;
-      }
-   }
-
-   private static void processImageLine(Map<String, List<PImage>> images,
-                                 String line, PApplet screen)
-   {
-      String[] attrs = line.split("\\s");
-      if (attrs.length >= 2)
-      {
-         String key = attrs[0];
-         PImage img = screen.loadImage(attrs[1]);
-         if (img != null && img.width != -1)
-         {
-            List<PImage> imgs = getImages(images, key);
-            imgs.add(img);
-
-            if (attrs.length >= Functions.KEYED_IMAGE_MIN)
-            {
-               int r = Integer.parseInt(attrs[Functions.KEYED_RED_IDX]);
-               int g = Integer.parseInt(attrs[Functions.KEYED_GREEN_IDX]);
-               int b = Integer.parseInt(attrs[Functions.KEYED_BLUE_IDX]);
-               setAlpha(img, screen.color(r, g, b), 0);
-            }
-         }
-      }
-   }
-
-
-   private static List<PImage> getImages(Map<String, List<PImage>> images,
-      String key)
-   {
-      List<PImage> imgs = images.get(key);
-      if (imgs == null)
-      {
-         imgs = new LinkedList<>();
-         images.put(key, imgs);
-      }
-      return imgs;
-   }
-
-   /*
-     Called with color for which alpha should be set and alpha value.
-     setAlpha(img, color(255, 255, 255), 0));
-   */
-   private static void setAlpha(PImage img, int maskColor, int alpha)
-   {
-      int alphaValue = alpha << 24;
-      int nonAlpha = maskColor & COLOR_MASK;
-      img.format = PApplet.ARGB;
-      img.loadPixels();
-      for (int i = 0; i < img.pixels.length; i++)
-      {
-         if ((img.pixels[i] & COLOR_MASK) == nonAlpha)
-         {
-            img.pixels[i] = alphaValue | nonAlpha;
-         }
-      }
-      img.updatePixels();
-   }
-
-   /*public static void shift(Viewport viewport, int col, int row)
-   {
-      viewport.col = col;
-      viewport.row = row;
-   }
-
-   public static boolean contains(Viewport viewport, Point p)
-   {
-      return p.y >= viewport.row && p.y < viewport.row + viewport.numRows &&
-         p.x >= viewport.col && p.x < viewport.col + viewport.numCols;
-   }
-*/
-   public static void load(Scanner in, WorldModel world, ImageStore imageStore)
+   public static void load(Scanner in, WorldModel world)
    {
       int lineNumber = 0;
       while (in.hasNextLine())
       {
          try
          {
-            if (!processLine(in.nextLine(), world, imageStore))
+            if (!processLine(in.nextLine(), world))
             {
                System.err.println(String.format("invalid entry on line %d",
                   lineNumber));
@@ -712,8 +94,7 @@ final class Functions
       }
    }
 
-   private static boolean processLine(String line, WorldModel world,
-      ImageStore imageStore)
+   private static boolean processLine(String line, WorldModel world)
    {
       String[] properties = line.split("\\s");
       if (properties.length > 0)
@@ -721,17 +102,17 @@ final class Functions
          switch (properties[PROPERTY_KEY])
          {
          case BGND_KEY:
-            return parseBackground(properties, world, imageStore);
+            return parseBackground(properties, world);
          case MINER_KEY:
-            return parseMiner(properties, world, imageStore);
+            return parseMiner(properties, world);
          case OBSTACLE_KEY:
-            return parseObstacle(properties, world, imageStore);
+            return parseObstacle(properties, world);
          case ORE_KEY:
-            return parseOre(properties, world, imageStore);
+            return parseOre(properties, world);
          case SMITH_KEY:
-            return parseSmith(properties, world, imageStore);
+            return parseSmith(properties, world);
          case VEIN_KEY:
-            return parseVein(properties, world, imageStore);
+            return parseVein(properties, world);
          }
       }
 
@@ -739,22 +120,20 @@ final class Functions
    }
 
    private static boolean parseBackground(String [] properties,
-      WorldModel world, ImageStore imageStore)
+      WorldModel world)
    {
       if (properties.length == BGND_NUM_PROPERTIES)
       {
          Point pt = new Point(Integer.parseInt(properties[BGND_COL]),
             Integer.parseInt(properties[BGND_ROW]));
          String id = properties[BGND_ID];
-         world.setBackground(pt,
-            new Background(id, imageStore.getImageList(id)));
+         world.setBackground(pt, id);
       }
 
       return properties.length == BGND_NUM_PROPERTIES;
    }
 
-   private static boolean parseMiner(String [] properties, WorldModel world,
-      ImageStore imageStore)
+   private static boolean parseMiner(String [] properties, WorldModel world)
    {
       if (properties.length == MINER_NUM_PROPERTIES)
       {
@@ -765,15 +144,14 @@ final class Functions
             pt,
             Integer.parseInt(properties[MINER_ACTION_PERIOD]),
             Integer.parseInt(properties[MINER_ANIMATION_PERIOD]),
-            imageStore.getImageList(MINER_KEY));
+            MINER_KEY);
          world.tryAddEntity(entity);
       }
 
       return properties.length == MINER_NUM_PROPERTIES;
    }
 
-   private static boolean parseObstacle(String [] properties, WorldModel world,
-      ImageStore imageStore)
+   private static boolean parseObstacle(String [] properties, WorldModel world)
    {
       if (properties.length == OBSTACLE_NUM_PROPERTIES)
       {
@@ -781,15 +159,14 @@ final class Functions
             Integer.parseInt(properties[OBSTACLE_COL]),
             Integer.parseInt(properties[OBSTACLE_ROW]));
          Entity entity = WorldModel.createObstacle(properties[OBSTACLE_ID],
-            pt, imageStore.getImageList(OBSTACLE_KEY));
+            pt, OBSTACLE_KEY);
          world.tryAddEntity(entity);
       }
 
       return properties.length == OBSTACLE_NUM_PROPERTIES;
    }
 
-   private static boolean parseOre(String [] properties, WorldModel world,
-      ImageStore imageStore)
+   private static boolean parseOre(String [] properties, WorldModel world)
    {
       if (properties.length == ORE_NUM_PROPERTIES)
       {
@@ -797,30 +174,28 @@ final class Functions
             Integer.parseInt(properties[ORE_ROW]));
          Entity entity = WorldModel.createOre(properties[ORE_ID],
             pt, Integer.parseInt(properties[ORE_ACTION_PERIOD]),
-            imageStore.getImageList(ORE_KEY));
+            ORE_KEY);
          world.tryAddEntity(entity);
       }
 
       return properties.length == ORE_NUM_PROPERTIES;
    }
 
-   private static boolean parseSmith(String [] properties, WorldModel world,
-      ImageStore imageStore)
+   private static boolean parseSmith(String [] properties, WorldModel world)
    {
       if (properties.length == SMITH_NUM_PROPERTIES)
       {
          Point pt = new Point(Integer.parseInt(properties[SMITH_COL]),
             Integer.parseInt(properties[SMITH_ROW]));
          Entity entity = WorldModel.createBlacksmith(properties[SMITH_ID],
-            pt, imageStore.getImageList(SMITH_KEY));
+            pt, SMITH_KEY);
          world.tryAddEntity(entity);
       }
 
       return properties.length == SMITH_NUM_PROPERTIES;
    }
 
-   private static boolean parseVein(String [] properties, WorldModel world,
-      ImageStore imageStore)
+   private static boolean parseVein(String [] properties, WorldModel world)
    {
       if (properties.length == VEIN_NUM_PROPERTIES)
       {
@@ -829,317 +204,15 @@ final class Functions
          Entity entity = WorldModel.createVein(properties[VEIN_ID],
             pt,
             Integer.parseInt(properties[VEIN_ACTION_PERIOD]),
-            imageStore.getImageList(VEIN_KEY));
+            VEIN_KEY);
          world.tryAddEntity(entity);
       }
 
       return properties.length == VEIN_NUM_PROPERTIES;
    }
-   /*
-   public static void tryAddEntity(WorldModel world, Entity entity)
-   {
-      if (isOccupied(world, entity.position))
-      {
-         // arguably the wrong type of exception, but we are not
-         // defining our own exceptions yet
-         throw new IllegalArgumentException("position occupied");
-      }
-
-      addEntity(world, entity);
-   }
-
-   public static boolean withinBounds(WorldModel world, Point pos)
-   {
-      return pos.y >= 0 && pos.y < world.numRows &&
-         pos.x >= 0 && pos.x < world.numCols;
-   }
-
-   public static boolean isOccupied(WorldModel world, Point pos)
-   {
-      return withinBounds(world, pos) &&
-         getOccupancyCell(world, pos) != null;
-   }
-   */
-   private static Optional<Entity> nearestEntity(List<Entity> entities, Point pos)
-   {
-      if (entities.isEmpty())
-      {
-         return Optional.empty();
-      }
-      else
-      {
-         Entity nearest = entities.get(0);
-         int nearestDistance = nearest.position().distanceSquared(pos);
-
-         for (Entity other : entities)
-         {
-            int otherDistance = other.position().distanceSquared(pos);
 
-            if (otherDistance < nearestDistance)
-            {
-               nearest = other;
-               nearestDistance = otherDistance;
-            }
-         }
-
-         return Optional.of(nearest);
-      }
-   }
-   /*
-   public static int distanceSquared(Point p1, Point p2)
-   {
-      int deltaX = p1.x - p2.x;
-      int deltaY = p1.y - p2.y;
-
-      return deltaX * deltaX + deltaY * deltaY;
-   }
-   */
    public static Optional<Entity> findNearest(WorldModel world, Point pos, EntityKind kind)
    {
-      List<Entity> ofType = new LinkedList<>();
-      for (Entity entity : world.entities())
-      {
-         if (entity.kind() == kind)
-         {
-            ofType.add(entity);
-         }
-      }
-
-      return nearestEntity(ofType, pos);
+      return world.findNearest(pos, kind);
    }
-
-   /*
-      Assumes that there is no entity currently occupying the
-      intended destination cell.
-   */
-   /*
-   public static void addEntity(WorldModel world, Entity entity)
-   {
-      if (world.withinBounds(entity.position))
-      {
-         setOccupancyCell(world, entity.position, entity);
-         world.entities.add(entity);
-      }
-   }
-
-   public static void moveEntity(WorldModel world, Entity entity, Point pos)
-   {
-      Point oldPos = entity.position;
-      if (world.withinBounds(pos) && !pos.equals(oldPos))
-      {
-         setOccupancyCell(world, oldPos, null);
-         removeEntityAt(world, pos);
-         setOccupancyCell(world, pos, entity);
-         entity.position = pos;
-      }
-   }
-
-   public static void removeEntity(WorldModel world, Entity entity)
-   {
-      removeEntityAt(world, entity.position);
-   }
-
-   public static void removeEntityAt(WorldModel world, Point pos)
-   {
-      if (world.withinBounds(pos)
-         && getOccupancyCell(world, pos) != null)
-      {
-         Entity entity = getOccupancyCell(world, pos);
-
-         // this moves the entity just outside of the grid for
-         // debugging purposes
-         entity.position = new Point(-1, -1);
-         world.entities.remove(entity);
-         setOccupancyCell(world, pos, null);
-      }
-   }
-   */
-   /*
-   public static Optional<PImage> getBackgroundImage(WorldModel world,
-      Point pos)
-   {
-      if (world.withinBounds(pos))
-      {
-         return Optional.of(world.getBackgroundCell(pos).getCurrentImage());
-      }
-      else
-      {
-         return Optional.empty();
-      }
-   }*/
-   /*
-   public static void setBackground(WorldModel world, Point pos,
-      Background background)
-   {
-      if (world.withinBounds(pos))
-      {
-         world.setBackgroundCell(pos, background);
-      }
-   }
-
-   public static Optional<Entity> getOccupant(WorldModel world, Point pos)
-   {
-      if (world.isOccupied(pos))
-      {
-         return Optional.of(getOccupancyCell(world, pos));
-      }
-      else
-      {
-         return Optional.empty();
-      }
-   }
-
-   public static Entity getOccupancyCell(WorldModel world, Point pos)
-   {
-      return world.occupancy[pos.y][pos.x];
-   }
-
-   public static void setOccupancyCell(WorldModel world, Point pos,
-      Entity entity)
-   {
-      world.occupancy[pos.y][pos.x] = entity;
-   }
-
-   public static Background getBackgroundCell(WorldModel world, Point pos)
-   {
-      return world.background[pos.y][pos.x];
-   }
-
-   public static void setBackgroundCell(WorldModel world, Point pos,
-      Background background)
-   {
-      world.background[pos.y][pos.x] = background;
-   }
-   */
-   /*public static Point viewportToWorld(Viewport viewport, int col, int row)
-   {
-      return new Point(col + viewport.col, row + viewport.row);
-   }
-
-   public static Point worldToViewport(Viewport viewport, int col, int row)
-   {
-      return new Point(col - viewport.col, row - viewport.row);
-   }
-   */
-   /*public static int clamp(int value, int low, int high)
-   {
-      return Math.min(high, Math.max(value, low));
-   }
-
-   public static void shiftView(WorldView view, int colDelta, int rowDelta)
-   {
-      int newCol = clamp(view.viewport.col + colDelta, 0,
-         view.world.numCols - view.viewport.numCols);
-      int newRow = clamp(view.viewport.row + rowDelta, 0,
-         view.world.numRows - view.viewport.numRows);
-
-      view.viewport.shift(newCol, newRow);
-   }*/
-/*
-   public static void drawBackground(WorldView view)
-   {
-      for (int row = 0; row < view.viewport.numRows; row++)
-      {
-         for (int col = 0; col < view.viewport.numCols; col++)
-         {
-            Point worldPoint = viewportToWorld(view.viewport, col, row);
-            Optional<PImage> image = getBackgroundImage(view.world,
-               worldPoint);
-            if (image.isPresent())
-            {
-               view.screen.image(image.get(), col * view.tileWidth,
-                  row * view.tileHeight);
-            }
-         }
-      }
-   }
-
-   public static void drawEntities(WorldView view)
-   {
-      for (Entity entity : view.world.entities)
-      {
-         Point pos = entity.position;
-
-         if (view.viewport.contains(pos))
-         {
-            Point viewPoint = worldToViewport(view.viewport, pos.x, pos.y);
-            view.screen.image(entity.getCurrentImage(),
-               viewPoint.x * view.tileWidth, viewPoint.y * view.tileHeight);
-         }
-      }
-   }
-
-   public static void drawViewport(WorldView view)
-   {
-      drawBackground(view);
-      drawEntities(view);
-   }
-*/
-   /*public static Action createAnimationAction(Entity entity, int repeatCount)
-   {
-      return new Action(ActionKind.ANIMATION, entity, null, null, repeatCount);
-   }
-
-   public static Action createActivityAction(Entity entity, WorldModel world,
-      ImageStore imageStore)
-   {
-      return new Action(ActionKind.ACTIVITY, entity, world, imageStore, 0);
-   }*/
-   /*
-   public static Entity createBlacksmith(String id, Point position,
-      List<PImage> images)
-   {
-      return new Entity(EntityKind.BLACKSMITH, id, position, images,
-         0, 0, 0, 0);
-   }
-
-   public static Entity createMinerFull(String id, int resourceLimit,
-      Point position, int actionPeriod, int animationPeriod,
-      List<PImage> images)
-   {
-      return new Entity(EntityKind.MINER_FULL, id, position, images,
-         resourceLimit, resourceLimit, actionPeriod, animationPeriod);
-   }
-
-   public static Entity createMinerNotFull(String id, int resourceLimit,
-      Point position, int actionPeriod, int animationPeriod,
-      List<PImage> images)
-   {
-      return new Entity(EntityKind.MINER_NOT_FULL, id, position, images,
-         resourceLimit, 0, actionPeriod, animationPeriod);
-   }
-
-   public static Entity createObstacle(String id, Point position,
-      List<PImage> images)
-   {
-      return new Entity(EntityKind.OBSTACLE, id, position, images,
-         0, 0, 0, 0);
-   }
-
-   public static Entity createOre(String id, Point position, int actionPeriod,
-      List<PImage> images)
-   {
-      return new Entity(EntityKind.ORE, id, position, images, 0, 0,
-         actionPeriod, 0);
-   }
-
-   public static Entity createOreBlob(String id, Point position,
-      int actionPeriod, int animationPeriod, List<PImage> images)
-   {
-      return new Entity(EntityKind.ORE_BLOB, id, position, images,
-            0, 0, actionPeriod, animationPeriod);
-   }
-
-   public static Entity createQuake(Point position, List<PImage> images)
-   {
-      return new Entity(EntityKind.QUAKE, QUAKE_ID, position, images,
-         0, 0, QUAKE_ACTION_PERIOD, QUAKE_ANIMATION_PERIOD);
-   }
-
-   public static Entity createVein(String id, Point position, int actionPeriod,
-      List<PImage> images)
-   {
-      return new Entity(EntityKind.VEIN, id, position, images, 0, 0,
-         actionPeriod, 0);
-   }*/
 }
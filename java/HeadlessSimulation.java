@@ -0,0 +1,261 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/*
+   Batch driver that runs a world without a window or any Processing
+   classes on the classpath. Time is simulated:
+   instead of sleeping until the next event is due, the clock jumps
+   straight to it, so hours of world time take seconds of CPU.
+
+   With -ecs the loaded world is copied into the structure-of-arrays
+   engine (EcsSimulation) instead, optionally repeated -tile n times in
+   each direction, and stepped at a fixed tick.
+
+   -size sets the world dimensions; the save file only populates the
+   cells it names, so a small save in a huge world stays cheap.
+
+   -parallel n runs the events with a RegionExecutor on n threads; for a
+   seed its results are the same for any n.
+
+   usage: HeadlessSimulation [-wheel] [-timeanim] [-ecs] [-tile n]
+                             [-seed n] [-size cols rows] [-parallel n]
+                             [world file] [seconds]
+*/
+public final class HeadlessSimulation
+{
+   private static final int WORLD_COLS = 40;
+   private static final int WORLD_ROWS = 30;
+
+   private static final String DEFAULT_LOAD_FILE_NAME = "gaia.sav";
+   private static final String DEFAULT_IMAGE_NAME = "background_default";
+   private static final long DEFAULT_DURATION_SECONDS = 3600;
+   private static final long START_TIME = 0;
+
+   private static final String WHEEL_FLAG = "-wheel";
+   private static final String SEED_FLAG = "-seed";
+   private static final String ECS_FLAG = "-ecs";
+   private static final String TILE_FLAG = "-tile";
+   private static final String SIZE_FLAG = "-size";
+   private static final String TIME_ANIMATION_FLAG = "-timeanim";
+   private static final String PARALLEL_FLAG = "-parallel";
+   private static final long WHEEL_TICK_MILLIS = 1;
+   private static final long ECS_TICK_MILLIS = 10;
+
+   private final WorldModel world;
+   private final SimulatedClock clock;
+   private final EventScheduler scheduler;
+   private RegionExecutor regions;
+   private long eventsExecuted;
+
+   public HeadlessSimulation(int numRows, int numCols, EventQueue eventQueue)
+   {
+      this.world = new WorldModel(numRows, numCols,
+         new Background(DEFAULT_IMAGE_NAME));
+      this.clock = new SimulatedClock(START_TIME);
+      this.scheduler = new EventScheduler(1.0, eventQueue, clock);
+      this.scheduler.watch(this.world);
+      this.eventsExecuted = 0;
+   }
+
+   public WorldModel world()
+   {
+      return this.world;
+   }
+
+   public long currentTime()
+   {
+      return this.clock.currentTimeMillis();
+   }
+
+   public long eventsExecuted()
+   {
+      return this.eventsExecuted;
+   }
+
+   /*
+      Populates the world from a save file. The -ecs engine schedules its
+      own copy of the world, so it loads without scheduling anything here.
+   */
+   public void load(Scanner in, boolean schedule)
+   {
+      Functions.load(in, world);
+      if (!schedule)
+      {
+         return;
+      }
+
+      for (Entity entity : world.entities())
+      {
+         scheduler.scheduleActions(entity, world);
+      }
+   }
+
+   /*
+      From now on runs the events by region on the given number of
+      threads, drawing the regions' random seeds from seed.
+   */
+   public void runByRegion(int threads, long seed)
+   {
+      this.regions = new RegionExecutor(this.world, this.scheduler,
+         this.clock, threads, seed);
+   }
+
+   /*
+      Runs every event due before endTime, advancing the clock to each
+      event's time as it goes, and leaves the clock at endTime.
+   */
+   public void runUntil(long endTime)
+   {
+      if (this.regions != null)
+      {
+         eventsExecuted += this.regions.runUntil(endTime);
+         return;
+      }
+
+      long next = scheduler.nextEventTime();
+
+      while (next < endTime)
+      {
+         clock.advanceTo(Math.max(next, clock.currentTimeMillis()));
+         eventsExecuted += scheduler.updateOnTime(
+            clock.currentTimeMillis() + 1);
+         next = scheduler.nextEventTime();
+      }
+
+      clock.advanceTo(Math.max(endTime, clock.currentTimeMillis()));
+   }
+
+   /*
+      Hands the loaded world over to the data-oriented engine and runs it
+      for the given number of seconds at a fixed tick.
+   */
+   private static void runEcs(WorldModel world, int tiles, long seconds)
+   {
+      long start = System.nanoTime();
+      EcsSimulation ecs = EcsSimulation.fromWorldModel(world, tiles,
+         START_TIME);
+      long loaded = System.nanoTime();
+
+      long endTime = START_TIME + seconds * 1000;
+      for (long now = START_TIME; now < endTime; now += ECS_TICK_MILLIS)
+      {
+         ecs.tick(now);
+      }
+      long elapsed = System.nanoTime() - loaded;
+
+      System.out.println(String.format(
+         "ecs: %d entities on %dx%d, set up in %.3f s",
+         ecs.world().liveCount(), ecs.world().numCols, ecs.world().numRows,
+         (loaded - start) / 1e9));
+      System.out.println(String.format(
+         "simulated %d s in %.3f s of CPU, %d actions",
+         seconds, elapsed / 1e9, ecs.actionsExecuted()));
+      System.out.println(ecs.census());
+   }
+
+   public Map<EntityKind, Integer> census()
+   {
+      Map<EntityKind, Integer> counts = new EnumMap<>(EntityKind.class);
+      for (Entity entity : world.entities())
+      {
+         counts.merge(entity.kind(), 1, Integer::sum);
+      }
+      return counts;
+   }
+
+   public static void main(String [] args)
+   {
+      String fileName = DEFAULT_LOAD_FILE_NAME;
+      long seconds = DEFAULT_DURATION_SECONDS;
+      boolean useTimingWheel = false;
+      boolean useEcs = false;
+      boolean useDerivedAnimation = false;
+      int tiles = 1;
+      int threads = 0;
+      int cols = WORLD_COLS;
+      int rows = WORLD_ROWS;
+      int positional = 0;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         switch (args[i])
+         {
+            case WHEEL_FLAG:
+               useTimingWheel = true;
+               break;
+            case TIME_ANIMATION_FLAG:
+               useDerivedAnimation = true;
+               break;
+            case ECS_FLAG:
+               useEcs = true;
+               break;
+            case TILE_FLAG:
+               tiles = Integer.parseInt(args[++i]);
+               break;
+            case SIZE_FLAG:
+               cols = Integer.parseInt(args[++i]);
+               rows = Integer.parseInt(args[++i]);
+               break;
+            case PARALLEL_FLAG:
+               threads = Integer.parseInt(args[++i]);
+               break;
+            case SEED_FLAG:
+               Functions.rand.setSeed(Long.parseLong(args[++i]));
+               break;
+            default:
+               if (positional++ == 0)
+               {
+                  fileName = args[i];
+               }
+               else
+               {
+                  seconds = Long.parseLong(args[i]);
+               }
+         }
+      }
+
+      EventQueue queue = useTimingWheel ?
+         new TimingWheel(WHEEL_TICK_MILLIS) :
+         new EventHeap(new EventComparator());
+      HeadlessSimulation sim = new HeadlessSimulation(rows, cols,
+         queue);
+      sim.scheduler.setDerivedAnimation(useDerivedAnimation);
+
+      try
+      {
+         sim.load(new Scanner(new File(fileName)), !useEcs);
+      }
+      catch (FileNotFoundException e)
+      {
+         System.err.println(e.getMessage());
+         return;
+      }
+
+      if (useEcs)
+      {
+         runEcs(sim.world(), tiles, seconds);
+         return;
+      }
+
+      if (threads > 0)
+      {
+         sim.runByRegion(threads, Functions.rand.nextLong());
+      }
+
+      long start = System.nanoTime();
+      sim.runUntil(START_TIME + seconds * 1000);
+      long elapsed = System.nanoTime() - start;
+
+      System.out.println(String.format(
+         "simulated %d s in %.3f s of CPU, %d events",
+         seconds, elapsed / 1e9, sim.eventsExecuted()));
+      System.out.println(String.format(
+         "%d ore collected, %.2f per simulated minute",
+         sim.world().oreDispatcher().collected(),
+         sim.world().oreDispatcher().collected() * 60.0 / seconds));
+      System.out.println(sim.census());
+   }
+}
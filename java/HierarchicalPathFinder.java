@@ -0,0 +1,610 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+   HPA*: the grid is cut into CLUSTER_SIZE square clusters, and every
+   open stretch of a border between two clusters gets a pair of
+   transition nodes. Nodes inside a cluster are linked by their in-cluster
+   walking distance, so a long route is searched over this small abstract
+   graph and then refined into cells one leg at a time with the ordinary
+   PathFinder.
+
+   The abstract graph only considers static blockers (see
+   DistanceField.isStatic); moving entities are dealt with when legs are
+   refined. When a static entity is added or removed only its cluster,
+   its four borders and the neighbouring clusters' links are rebuilt.
+*/
+final class HierarchicalPathFinder
+{
+   public static final int CLUSTER_SIZE = 16;
+
+   /* routes shorter than this are cheaper to search directly */
+   public static final int MIN_DISTANCE = 2 * CLUSTER_SIZE;
+
+   private static final int LONG_ENTRANCE = 6;
+   private static final int LEG_EXPANSIONS = 4 * CLUSTER_SIZE * CLUSTER_SIZE;
+   private static final int[] DX = {-1, 1, 0, 0};
+   private static final int[] DY = {0, 0, -1, 1};
+
+   private static final class Node
+   {
+      final int x;
+      final int y;
+      final int cluster;
+      final List<Edge> edges = new ArrayList<>(4);
+      int stamp;
+      int closed;
+      int searchId;
+      int cost;
+      Node parent;
+
+      Node(int x, int y, int cluster)
+      {
+         this.x = x;
+         this.y = y;
+         this.cluster = cluster;
+      }
+   }
+
+   private static final class Edge
+   {
+      final Node to;
+      final int cost;
+
+      Edge(Node to, int cost)
+      {
+         this.to = to;
+         this.cost = cost;
+      }
+   }
+
+   private final WorldModel world;
+   private final int numRows;
+   private final int numCols;
+   private final int clusterCols;
+   private final int clusterRows;
+   private final List<List<Node>> clusterNodes;
+   private final List<List<Node>> eastBorder;
+   private final List<List<Node>> southBorder;
+   private final boolean[] dirty;
+   private boolean anyDirty;
+   private int searchStamp;
+   private final List<Node> touched;
+   private long[] open;
+   private int openSize;
+
+   private final int[] localDistance;
+   private final int[] localQueue;
+
+   public HierarchicalPathFinder(WorldModel world)
+   {
+      this.world = world;
+      this.numRows = world.numRows();
+      this.numCols = world.numCols();
+      this.clusterCols = (numCols + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+      this.clusterRows = (numRows + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+
+      int clusters = clusterCols * clusterRows;
+      this.clusterNodes = new ArrayList<>(clusters);
+      this.eastBorder = new ArrayList<>(clusters);
+      this.southBorder = new ArrayList<>(clusters);
+      for (int c = 0; c < clusters; c++)
+      {
+         this.clusterNodes.add(new ArrayList<>());
+         this.eastBorder.add(new ArrayList<>());
+         this.southBorder.add(new ArrayList<>());
+      }
+
+      this.dirty = new boolean[clusters];
+      Arrays.fill(this.dirty, true);
+      this.anyDirty = true;
+      this.searchStamp = 0;
+      this.touched = new ArrayList<>();
+      this.open = new long[64];
+      this.openSize = 0;
+
+      this.localDistance = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+      this.localQueue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+   }
+
+   /* a static entity appeared or disappeared at pos */
+   public void cellChanged(Point pos)
+   {
+      this.dirty[this.clusterOf(pos.x(), pos.y())] = true;
+      this.anyDirty = true;
+   }
+
+   /*
+      Path from start to a cell adjacent to target, planned over the
+      abstract graph and refined with finder, or null when either step
+      fails.
+   */
+   public Path findPath(Point start, Entity target, PathFinder finder,
+                        PathFinder.Passability passability)
+   {
+      this.refresh();
+
+      Point goal = target.position();
+      int startCluster = this.clusterOf(start.x(), start.y());
+      int goalCluster = this.clusterOf(goal.x(), goal.y());
+
+      Node source = new Node(start.x(), start.y(), startCluster);
+      Node sink = new Node(goal.x(), goal.y(), goalCluster);
+
+      // temporary links: source out to its cluster, and in to sink from
+      // the clusters of the cells next to the goal, which a goal on a
+      // cluster's edge may only be reachable through
+      this.linkLocal(source, this.clusterNodes.get(startCluster));
+      List<Edge> intoSink = new ArrayList<>();
+      for (int i = 0; i < DX.length; i++)
+      {
+         int x = goal.x() + DX[i];
+         int y = goal.y() + DY[i];
+         if (x < 0 || x >= this.numCols || y < 0 || y >= this.numRows ||
+                 !this.isOpen(x, y))
+         {
+            continue;
+         }
+
+         Node arrival = new Node(x, y, this.clusterOf(x, y));
+         this.fillLocalDistances(arrival);
+         for (Node node : this.clusterNodes.get(arrival.cluster))
+         {
+            int d = this.localDistanceTo(arrival, node);
+            if (d >= 0)
+            {
+               intoSink.add(new Edge(node, d + 1));
+            }
+         }
+         if (arrival.cluster == startCluster)
+         {
+            int d = this.localDistanceTo(arrival, source);
+            if (d >= 0)
+            {
+               source.edges.add(new Edge(sink, d + 1));
+            }
+         }
+      }
+
+      List<Node> route = this.search(source, sink, intoSink);
+      if (route == null)
+      {
+         return null;
+      }
+
+      return this.refine(route, target, finder, passability);
+   }
+
+   private List<Node> search(Node source, Node sink, List<Edge> intoSink)
+   {
+      int stamp = ++this.searchStamp;
+      this.touched.clear();
+      this.openSize = 0;
+
+      this.touch(source, stamp, 0, null);
+      this.push(this.estimate(source, sink), source.searchId);
+
+      while (this.openSize > 0)
+      {
+         Node node = this.touched.get(this.pop());
+         if (node.closed == stamp)
+         {
+            continue;
+         }
+         node.closed = stamp;
+
+         if (node == sink)
+         {
+            List<Node> route = new ArrayList<>();
+            for (Node n = sink; n != null; n = n.parent)
+            {
+               route.add(n);
+            }
+            Collections.reverse(route);
+            return route;
+         }
+
+         List<Edge> edges = node.edges;
+         int count = edges.size();
+         Edge toSink = sinkEdge(node, sink, intoSink);
+
+         for (int i = 0; i < count || (i == count && toSink != null); i++)
+         {
+            Edge edge = i < count ? edges.get(i) : toSink;
+            Node next = edge.to;
+            int cost = node.cost + edge.cost;
+
+            if (next.stamp != stamp || cost < next.cost)
+            {
+               this.touch(next, stamp, cost, node);
+               this.push(cost + this.estimate(next, sink), next.searchId);
+            }
+         }
+      }
+
+      return null;
+   }
+
+   private void touch(Node node, int stamp, int cost, Node parent)
+   {
+      if (node.stamp != stamp)
+      {
+         node.stamp = stamp;
+         node.searchId = this.touched.size();
+         this.touched.add(node);
+      }
+      node.cost = cost;
+      node.parent = parent;
+   }
+
+   private void push(int priority, int id)
+   {
+      if (this.openSize == this.open.length)
+      {
+         this.open = Arrays.copyOf(this.open, this.open.length * 2);
+      }
+
+      long key = ((long)priority << 32) | id;
+      int index = this.openSize++;
+      while (index > 0)
+      {
+         int up = (index - 1) >>> 1;
+         if (this.open[up] <= key)
+         {
+            break;
+         }
+         this.open[index] = this.open[up];
+         index = up;
+      }
+      this.open[index] = key;
+   }
+
+   private int pop()
+   {
+      long first = this.open[0];
+      long last = this.open[--this.openSize];
+
+      int index = 0;
+      int half = this.openSize >>> 1;
+      while (index < half)
+      {
+         int child = 2 * index + 1;
+         if (child + 1 < this.openSize && this.open[child + 1] < this.open[child])
+         {
+            child++;
+         }
+         if (last <= this.open[child])
+         {
+            break;
+         }
+         this.open[index] = this.open[child];
+         index = child;
+      }
+      if (this.openSize > 0)
+      {
+         this.open[index] = last;
+      }
+
+      return (int)first;
+   }
+
+   /* cheapest of node's links into sink, or null */
+   private static Edge sinkEdge(Node node, Node sink, List<Edge> intoSink)
+   {
+      Edge best = null;
+      for (Edge edge : intoSink)
+      {
+         if (edge.to == node && (best == null || edge.cost < best.cost))
+         {
+            best = new Edge(sink, edge.cost);
+         }
+      }
+      return best;
+   }
+
+   private int estimate(Node node, Node sink)
+   {
+      return Math.abs(node.x - sink.x) + Math.abs(node.y - sink.y);
+   }
+
+   private Path refine(List<Node> route, Entity target, PathFinder finder,
+                       PathFinder.Passability passability)
+   {
+      int[] cells = new int[0];
+      int length = 0;
+      int x = route.get(0).x;
+      int y = route.get(0).y;
+
+      for (int i = 1; i < route.size(); i++)
+      {
+         Node waypoint = route.get(i);
+         boolean last = i == route.size() - 1;
+         if (!last && waypoint.x == x && waypoint.y == y)
+         {
+            continue;
+         }
+
+         int[] leg = finder.findCells(x, y, waypoint.x, waypoint.y,
+                 last ? 1 : 0, LEG_EXPANSIONS, passability);
+         if (leg == null)
+         {
+            return null;
+         }
+
+         if (length + leg.length > cells.length)
+         {
+            cells = Arrays.copyOf(cells,
+                    Math.max(cells.length * 2, length + leg.length));
+         }
+         System.arraycopy(leg, 0, cells, length, leg.length);
+         length += leg.length;
+
+         if (leg.length > 0)
+         {
+            x = leg[leg.length - 1] % this.numCols;
+            y = leg[leg.length - 1] / this.numCols;
+         }
+      }
+
+      int[] xs = new int[length];
+      int[] ys = new int[length];
+      for (int i = 0; i < length; i++)
+      {
+         xs[i] = cells[i] % this.numCols;
+         ys[i] = cells[i] / this.numCols;
+      }
+      return new Path(target, xs, ys);
+   }
+
+   private void refresh()
+   {
+      if (!this.anyDirty)
+      {
+         return;
+      }
+
+      int clusters = this.dirty.length;
+      boolean[] borderEast = new boolean[clusters];
+      boolean[] borderSouth = new boolean[clusters];
+      boolean[] relink = new boolean[clusters];
+
+      for (int c = 0; c < clusters; c++)
+      {
+         if (!this.dirty[c])
+         {
+            continue;
+         }
+
+         int cx = c % this.clusterCols;
+         int cy = c / this.clusterCols;
+         borderEast[c] = true;
+         borderSouth[c] = true;
+         relink[c] = true;
+         if (cx > 0)
+         {
+            borderEast[c - 1] = true;
+            relink[c - 1] = true;
+         }
+         if (cx < this.clusterCols - 1)
+         {
+            relink[c + 1] = true;
+         }
+         if (cy > 0)
+         {
+            borderSouth[c - this.clusterCols] = true;
+            relink[c - this.clusterCols] = true;
+         }
+         if (cy < this.clusterRows - 1)
+         {
+            relink[c + this.clusterCols] = true;
+         }
+      }
+
+      for (int c = 0; c < clusters; c++)
+      {
+         if (borderEast[c])
+         {
+            this.dropBorder(this.eastBorder.get(c));
+         }
+         if (borderSouth[c])
+         {
+            this.dropBorder(this.southBorder.get(c));
+         }
+      }
+
+      for (int c = 0; c < clusters; c++)
+      {
+         if (borderEast[c] && c % this.clusterCols < this.clusterCols - 1)
+         {
+            this.buildBorder(c, c + 1, true);
+         }
+         if (borderSouth[c] && c / this.clusterCols < this.clusterRows - 1)
+         {
+            this.buildBorder(c, c + this.clusterCols, false);
+         }
+      }
+
+      for (int c = 0; c < clusters; c++)
+      {
+         if (relink[c])
+         {
+            this.relinkCluster(c);
+         }
+      }
+
+      Arrays.fill(this.dirty, false);
+      this.anyDirty = false;
+   }
+
+   private void dropBorder(List<Node> border)
+   {
+      for (Node node : border)
+      {
+         this.clusterNodes.get(node.cluster).remove(node);
+      }
+      border.clear();
+   }
+
+   /*
+      One transition per open stretch of the border (two, one at each end,
+      for long stretches), as a linked pair of nodes on either side.
+   */
+   private void buildBorder(int from, int to, boolean east)
+   {
+      List<Node> border = east ? this.eastBorder.get(from) :
+              this.southBorder.get(from);
+      int fx = (from % this.clusterCols) * CLUSTER_SIZE;
+      int fy = (from / this.clusterCols) * CLUSTER_SIZE;
+
+      int length = east ?
+              Math.min(CLUSTER_SIZE, this.numRows - fy) :
+              Math.min(CLUSTER_SIZE, this.numCols - fx);
+      int runStart = -1;
+
+      for (int i = 0; i <= length; i++)
+      {
+         boolean open = i < length && (east ?
+                 this.isOpen(fx + CLUSTER_SIZE - 1, fy + i) &&
+                         this.isOpen(fx + CLUSTER_SIZE, fy + i) :
+                 this.isOpen(fx + i, fy + CLUSTER_SIZE - 1) &&
+                         this.isOpen(fx + i, fy + CLUSTER_SIZE));
+
+         if (open && runStart < 0)
+         {
+            runStart = i;
+         }
+         else if (!open && runStart >= 0)
+         {
+            int runEnd = i - 1;
+            if (runEnd - runStart + 1 >= LONG_ENTRANCE)
+            {
+               this.addTransition(border, from, to, east, fx, fy, runStart);
+               this.addTransition(border, from, to, east, fx, fy, runEnd);
+            }
+            else
+            {
+               this.addTransition(border, from, to, east, fx, fy,
+                       (runStart + runEnd) / 2);
+            }
+            runStart = -1;
+         }
+      }
+   }
+
+   private void addTransition(List<Node> border, int from, int to,
+                              boolean east, int fx, int fy, int offset)
+   {
+      Node near = east ?
+              new Node(fx + CLUSTER_SIZE - 1, fy + offset, from) :
+              new Node(fx + offset, fy + CLUSTER_SIZE - 1, from);
+      Node far = east ?
+              new Node(fx + CLUSTER_SIZE, fy + offset, to) :
+              new Node(fx + offset, fy + CLUSTER_SIZE, to);
+
+      near.edges.add(new Edge(far, 1));
+      far.edges.add(new Edge(near, 1));
+      border.add(near);
+      border.add(far);
+      this.clusterNodes.get(from).add(near);
+      this.clusterNodes.get(to).add(far);
+   }
+
+   private void relinkCluster(int cluster)
+   {
+      List<Node> nodes = this.clusterNodes.get(cluster);
+      for (Node node : nodes)
+      {
+         node.edges.removeIf(edge -> edge.to.cluster == cluster);
+      }
+      for (Node node : nodes)
+      {
+         this.linkLocal(node, nodes);
+      }
+   }
+
+   /* edges from node to every other node of the list it can walk to */
+   private void linkLocal(Node node, List<Node> nodes)
+   {
+      this.fillLocalDistances(node);
+
+      for (Node other : nodes)
+      {
+         if (other == node)
+         {
+            continue;
+         }
+         int d = this.localDistanceTo(node, other);
+         if (d >= 0)
+         {
+            node.edges.add(new Edge(other, d));
+         }
+      }
+   }
+
+   /*
+      Distance to node b from the last node passed to fillLocalDistances,
+      in that node's cluster, or -1
+   */
+   private int localDistanceTo(Node origin, Node b)
+   {
+      int ox = (origin.cluster % this.clusterCols) * CLUSTER_SIZE;
+      int oy = (origin.cluster / this.clusterCols) * CLUSTER_SIZE;
+      return this.localDistance[(b.y - oy) * CLUSTER_SIZE + (b.x - ox)];
+   }
+
+   /*
+      BFS from node over the open cells of its own cluster. The node's own
+      cell counts as open, so walkers and blocked goals can be linked in.
+   */
+   private void fillLocalDistances(Node node)
+   {
+      int ox = (node.cluster % this.clusterCols) * CLUSTER_SIZE;
+      int oy = (node.cluster / this.clusterCols) * CLUSTER_SIZE;
+      int width = Math.min(CLUSTER_SIZE, this.numCols - ox);
+      int height = Math.min(CLUSTER_SIZE, this.numRows - oy);
+
+      Arrays.fill(this.localDistance, -1);
+      int startCell = (node.y - oy) * CLUSTER_SIZE + (node.x - ox);
+      this.localDistance[startCell] = 0;
+      this.localQueue[0] = startCell;
+      int head = 0;
+      int tail = 1;
+
+      while (head < tail)
+      {
+         int cell = this.localQueue[head++];
+         int lx = cell % CLUSTER_SIZE;
+         int ly = cell / CLUSTER_SIZE;
+
+         for (int i = 0; i < DX.length; i++)
+         {
+            int x = lx + DX[i];
+            int y = ly + DY[i];
+            if (x < 0 || x >= width || y < 0 || y >= height)
+            {
+               continue;
+            }
+
+            int neighbour = y * CLUSTER_SIZE + x;
+            if (this.localDistance[neighbour] < 0 && this.isOpen(ox + x, oy + y))
+            {
+               this.localDistance[neighbour] = this.localDistance[cell] + 1;
+               this.localQueue[tail++] = neighbour;
+            }
+         }
+      }
+   }
+
+   private boolean isOpen(int x, int y)
+   {
+      Entity occupant = this.world.occupantAt(x, y);
+      return occupant == null || !DistanceField.isStatic(occupant.kind());
+   }
+
+   private int clusterOf(int x, int y)
+   {
+      return (y / CLUSTER_SIZE) * this.clusterCols + x / CLUSTER_SIZE;
+   }
+}
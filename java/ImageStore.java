@@ -5,33 +5,103 @@ import processing.core.PImage;
 
 final class ImageStore
 {
-   private Map<String, List<PImage>> images;
-   private List<PImage> defaultImages;
+   private static final int COLOR_MASK = 0xffffff;
+   private static final int KEYED_IMAGE_MIN = 5;
+   private static final int KEYED_RED_IDX = 2;
+   private static final int KEYED_GREEN_IDX = 3;
+   private static final int KEYED_BLUE_IDX = 4;
 
-   public Map<String, List<PImage>> images() {
-      return images;
+   private Map<String, SpriteSequence> images;
+   private SpriteSequence defaultImages;
+   private SpriteSequence[] bySpriteId;
+
+   public Map<String, SpriteSequence> images() {
+      return Collections.unmodifiableMap(images);
    }
 
    public ImageStore(PImage defaultImage)
    {
       this.images = new HashMap<>();
-      defaultImages = new LinkedList<>();
-      defaultImages.add(defaultImage);
+      this.defaultImages = new SpriteSequence(
+              Collections.singletonList(defaultImage));
+      this.bySpriteId = new SpriteSequence[0];
    }
 
-   public List<PImage> getImageList(String key)
+   public SpriteSequence getSequence(String key)
    {
       return this.images.getOrDefault(key, this.defaultImages);
    }
-/*
+
+   public List<PImage> getImageList(String key)
+   {
+      return getSequence(key).frames();
+   }
+
+   public PImage getCurrentImage(Entity entity)
+   {
+      return getSequence(entity.spriteId()).frame(entity.imageIndex());
+   }
+
+   /* as above, for entities whose frame is derived from the time */
+   public PImage getCurrentImage(Entity entity, long now)
+   {
+      return getSequence(entity.spriteId()).frame(entity.imageIndex(now));
+   }
+
+   /* as above, for a sprite and frame recorded in a WorldSnapshot */
+   public PImage getCurrentImage(int spriteId, int imageIndex)
+   {
+      return getSequence(spriteId).frame(imageIndex);
+   }
+
+   public PImage getCurrentImage(Background background)
+   {
+      return getSequence(background.spriteId())
+              .frame(background.imageIndex());
+   }
+
+   /* sequence for an interned key, cached in an array indexed by id */
+   private SpriteSequence getSequence(int spriteId)
+   {
+      if (spriteId < this.bySpriteId.length)
+      {
+         SpriteSequence cached = this.bySpriteId[spriteId];
+         if (cached != null)
+         {
+            return cached;
+         }
+      }
+      else
+      {
+         this.bySpriteId = Arrays.copyOf(this.bySpriteId,
+                 Math.max(spriteId + 1, SpriteKeys.count()));
+      }
+
+      SpriteSequence sequence = getSequence(SpriteKeys.keyOf(spriteId));
+      this.bySpriteId[spriteId] = sequence;
+      return sequence;
+   }
+
+   /* packs every loaded frame, and the default image, into one texture */
+   public SpriteAtlas buildAtlas(PApplet screen)
+   {
+      List<PImage> frames = new ArrayList<>(this.defaultImages.frames());
+      for (SpriteSequence sequence : this.images.values())
+      {
+         frames.addAll(sequence.frames());
+      }
+      return SpriteAtlas.pack(screen, frames);
+   }
+
    public void loadImages(Scanner in, PApplet screen)
    {
+      Map<String, List<PImage>> loaded = new HashMap<>();
       int lineNumber = 0;
       while (in.hasNextLine())
       {
          try
          {
-            processImageLine(this.images, in.nextLine(), screen);
+            processImageLine(loaded, in.nextLine(), screen);
          }
          catch (NumberFormatException e)
          {
@@ -40,11 +110,16 @@ final class ImageStore
          }
          lineNumber++;
       }
+
+      for (Map.Entry<String, List<PImage>> entry : loaded.entrySet())
+      {
+         this.images.put(entry.getKey(), new SpriteSequence(entry.getValue()));
+      }
+      Arrays.fill(this.bySpriteId, null);
    }
-*/
-/*
-   private void processImageLine(Map<String, List<PImage>> images,
-                                       String line, PApplet screen)
+
+   private static void processImageLine(Map<String, List<PImage>> images,
+                                        String line, PApplet screen)
    {
       String[] attrs = line.split("\\s");
       if (attrs.length >= 2)
@@ -56,45 +131,46 @@ final class ImageStore
             List<PImage> imgs = getImages(images, key);
             imgs.add(img);
 
-            if (attrs.length >= Functions.KEYED_IMAGE_MIN)
+            if (attrs.length >= KEYED_IMAGE_MIN)
             {
-               int r = Integer.parseInt(attrs[Functions.KEYED_RED_IDX]);
-               int g = Integer.parseInt(attrs[Functions.KEYED_GREEN_IDX]);
-               int b = Integer.parseInt(attrs[Functions.KEYED_BLUE_IDX]);
+               int r = Integer.parseInt(attrs[KEYED_RED_IDX]);
+               int g = Integer.parseInt(attrs[KEYED_GREEN_IDX]);
+               int b = Integer.parseInt(attrs[KEYED_BLUE_IDX]);
                setAlpha(img, screen.color(r, g, b), 0);
             }
          }
       }
    }
-*/
-/*
-   private  List<PImage> getImages(Map<String, List<PImage>> images,
-                                        String key)
+
+   private static List<PImage> getImages(Map<String, List<PImage>> images,
+                                         String key)
    {
       List<PImage> imgs = images.get(key);
       if (imgs == null)
       {
-         imgs = new LinkedList<>();
+         imgs = new ArrayList<>();
          images.put(key, imgs);
       }
       return imgs;
    }
-*/
-/*
-   private void setAlpha(PImage img, int maskColor, int alpha)
+
+   /*
+     Called with color for which alpha should be set and alpha value.
+     setAlpha(img, color(255, 255, 255), 0));
+   */
+   private static void setAlpha(PImage img, int maskColor, int alpha)
    {
       int alphaValue = alpha << 24;
-      int nonAlpha = maskColor & Functions.COLOR_MASK;
+      int nonAlpha = maskColor & COLOR_MASK;
       img.format = PApplet.ARGB;
       img.loadPixels();
       for (int i = 0; i < img.pixels.length; i++)
       {
-         if ((img.pixels[i] & Functions.COLOR_MASK) == nonAlpha)
+         if ((img.pixels[i] & COLOR_MASK) == nonAlpha)
          {
             img.pixels[i] = alphaValue | nonAlpha;
          }
       }
       img.updatePixels();
    }
-*/
 }
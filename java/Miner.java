@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+   A miner carries up to resourceLimit ore and follows a cached path to
+   its target, remembering the targets it recently found no path to.
+   Whether it is looking for ore or heading to a blacksmith is its
+   MinerState; changing state keeps the same entity, position and
+   animation and only reschedules its next activity.
+*/
+final class Miner extends AnimatedEntity {
+   private final int resourceLimit;
+   private int resourceCount;
+   private MinerState state;
+   private Path path;
+   private final List<PathFailure> failures;
+
+   public Miner(MinerState state, String id, Point position,
+                String imageKey, int resourceLimit, int resourceCount,
+                int actionPeriod, int animationPeriod) {
+      super(state.kind(), id, position, imageKey, actionPeriod,
+              animationPeriod);
+      this.state = state;
+      this.resourceLimit = resourceLimit;
+      this.resourceCount = resourceCount;
+      this.failures = new ArrayList<>();
+   }
+
+   public int resourceLimit() {
+      return resourceLimit;
+   }
+
+   public int resourceCount() {
+      return resourceCount;
+   }
+
+   void addResource() {
+      this.resourceCount += 1;
+   }
+
+   void emptyResources() {
+      this.resourceCount = 0;
+   }
+
+   @Override
+   public void executeActivity(WorldModel world, EventScheduler scheduler)
+   {
+      this.state.executeActivity(this, world, scheduler);
+   }
+
+   @Override
+   public boolean executeActivityInRegion(WorldModel world, Region region)
+   {
+      return this.state.executeInRegion(this, world, region);
+   }
+
+   /*
+      Switches to state; the world re-indexes the miner under its new
+      kind, the running animation is left alone, and the next activity
+      (which the caller must not also schedule) runs after the usual
+      action period.
+   */
+   void changeState(MinerState state, WorldModel world,
+                    EventScheduler scheduler)
+   {
+      this.state = state;
+      this.path = null;
+      this.failures.clear();
+      world.changeKind(this, state.kind());
+      scheduler.scheduleEvent(this, new Activity(this, world),
+              this.actionPeriod());
+   }
+
+   /* moves onto the packed position, evicting whatever is there */
+   void moveTo(WorldModel world, long nextPos, EventScheduler scheduler)
+   {
+      this.stepTo(world, nextPos, scheduler);
+   }
+
+   /* positions in the stepping code are packed, see Point.pack */
+   long nextPositionMiner(WorldModel world, Point destPos)
+   {
+      int x = this.position().x();
+      int y = this.position().y();
+
+      int horiz = Integer.signum(destPos.x() - x);
+      if (horiz != 0 && !world.isOccupied(x + horiz, y))
+      {
+         return Point.pack(x + horiz, y);
+      }
+
+      int vert = Integer.signum(destPos.y() - y);
+      if (vert != 0 && !world.isOccupied(x, y + vert))
+      {
+         return Point.pack(x, y + vert);
+      }
+
+      return Point.pack(x, y);
+   }
+
+   /*
+      Next step along the cached A* path through passability toward
+      target, replanning when the target has changed or the next cell has
+      been closed. Falls back to the greedy step when no path exists, and
+      does not search again while the last failed search toward target
+      would still fail.
+   */
+   long nextPositionByPath(WorldModel world, Entity target, long now,
+                           PathFinder.Passability passability)
+   {
+      if (this.path == null || !this.path.leadsTo(target) ||
+              !this.path.hasNext() ||
+              !passability.canEnter(this.path.nextX(), this.path.nextY()))
+      {
+         this.path = null;
+         if (!this.cannotReach(target, now))
+         {
+            this.path = world.findPath(this.position(), target,
+                    passability);
+            if (this.path == null)
+            {
+               this.pathFailed(world, target, passability, now);
+            }
+         }
+      }
+
+      if (this.path == null || !this.path.hasNext())
+      {
+         this.path = null;
+         return this.nextPositionMiner(world, target.position());
+      }
+
+      long next = Point.pack(this.path.nextX(), this.path.nextY());
+      this.path.advance();
+      return next;
+   }
+
+   /* whether a search for a path to target is known to fail at time now */
+   boolean cannotReach(Entity target, long now)
+   {
+      for (PathFailure failure : this.failures)
+      {
+         if (failure.target() == target && failure.holds(now))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /* whether any target at all is remembered as unreachable */
+   boolean hasPathFailures()
+   {
+      return !this.failures.isEmpty();
+   }
+
+   private void pathFailed(WorldModel world, Entity target,
+                           PathFinder.Passability passability, long now)
+   {
+      PathFailure previous = null;
+      for (PathFailure failure : this.failures)
+      {
+         if (failure.target() == target)
+         {
+            previous = failure;
+         }
+      }
+
+      this.failures.removeIf(failure -> failure.target() == target ||
+              !failure.holds(now));
+      this.failures.add(PathFailure.of(world, target, passability, now,
+              previous));
+   }
+}
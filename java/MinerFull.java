@@ -1,14 +1,143 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
-
-public class MinerFull {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+/*
+   A full miner heads for the nearest blacksmith to unload, passing over
+   blacksmiths it has just found no path to while it has another choice.
+   Parked miners do not block it: it trades places with any in its way.
+*/
+final class MinerFull implements MinerState {
+   public static final MinerFull INSTANCE = new MinerFull();
+
+   private MinerFull() {
+   }
+
+   @Override
+   public EntityKind kind() {
+      return EntityKind.MINER_FULL;
+   }
+
+   @Override
+   public void executeActivity(Miner miner, WorldModel world,
+                               EventScheduler scheduler)
+   {
+      Point pos = miner.position();
+      long now = scheduler.clock().currentTimeMillis();
+
+      // a blacksmith already next to us beats the nearest one as the crow flies
+      Entity fullTarget = world.findAdjacent(pos.x(), pos.y(),
+              EntityKind.BLACKSMITH);
+      if (fullTarget == null)
+      {
+         fullTarget = world.findNearest(pos.x(), pos.y(),
+                 EntityKind.BLACKSMITH,
+                 smith -> !miner.cannotReach(smith, now));
+      }
+      if (fullTarget == null)
+      {
+         fullTarget = world.findNearest(pos.x(), pos.y(),
+                 EntityKind.BLACKSMITH);
+      }
+
+      if (fullTarget == null)
+      {
+         scheduler.park(miner, EntityKind.BLACKSMITH,
+                 new Activity(miner, world));
+      }
+      else if (moveToFull(miner, world, fullTarget, now, scheduler))
+      {
+         miner.emptyResources();
+         miner.changeState(MinerNotfull.INSTANCE, world, scheduler);
+      }
+      else
+      {
+         scheduler.scheduleEvent(miner,
+                 new Activity(miner, world),
+                 miner.actionPeriod());
+      }
+   }
+
+   private static boolean moveToFull(Miner miner, WorldModel world,
+                                     Entity target, long now,
+                                     EventScheduler scheduler)
+   {
+      if (miner.position().adjacent(target.position()))
+      {
+         return true;
+      }
+      else
+      {
+         DistanceField field = world.distanceField(EntityKind.BLACKSMITH);
+         int x = miner.position().x();
+         int y = miner.position().y();
+         long stay = Point.pack(x, y);
+         PathFinder.Passability open = scheduler.emptyOrParkedCells();
+
+         // the field leads to the nearest blacksmith whether or not it
+         // can be reached, so it is no help once one has turned out not
+         // to be
+         long nextPos = field != null && field.isReachable(x, y) &&
+                 !miner.hasPathFailures() ?
+                 field.nextStep(x, y, open) : stay;
+
+         // every closer cell is taken, so route around them instead
+         if (nextPos == stay)
+         {
+            nextPos = miner.nextPositionByPath(world, target, now, open);
+         }
+
+         stepTo(miner, world, nextPos);
+         return false;
+      }
+   }
+
+   /*
+      A step along the distance field that stays inside region runs
+      there; one that would unload, park, search for a path, read the
+      miner's path failures or cross the region's edge does not.
+      Without path failures the filtered search for a blacksmith finds
+      the same one as the plain search used here.
+   */
+   @Override
+   public boolean executeInRegion(Miner miner, WorldModel world,
+                                  Region region)
+   {
+      int x = miner.position().x();
+      int y = miner.position().y();
+      DistanceField field =
+              world.currentDistanceField(EntityKind.BLACKSMITH);
+      if (!region.surrounds(x, y) || field == null ||
+              !field.isReachable(x, y) || miner.hasPathFailures() ||
+              world.findAdjacent(x, y, EntityKind.BLACKSMITH) != null)
+      {
+         return false;
+      }
+
+      Entity target = world.findNearest(x, y, EntityKind.BLACKSMITH);
+      long nextPos = field.nextStep(x, y,
+              region.scheduler().emptyOrParkedCells());
+      if (target == null || miner.position().adjacent(target.position()) ||
+              nextPos == Point.pack(x, y))
+      {
+         return false;
+      }
+
+      stepTo(miner, world, nextPos);
+      region.scheduleEvent(miner, new Activity(miner, world),
+              miner.actionPeriod());
+      return true;
+   }
+
+   /* only a parked miner can be in a cell the miner may enter */
+   private static void stepTo(Miner miner, WorldModel world, long nextPos)
+   {
+      int x = Point.unpackX(nextPos);
+      int y = Point.unpackY(nextPos);
+      Entity parked = world.occupantAt(x, y);
+      if (parked != null && parked != miner)
+      {
+         world.swapEntities(miner, parked);
+      }
+      else
+      {
+         world.moveEntity(miner, x, y);
+      }
+   }
 }
@@ -1,14 +1,60 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
-
-public class MinerNotfull {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+/* a miner with room left goes after the ore the dispatcher assigns it */
+final class MinerNotfull implements MinerState {
+   public static final MinerNotfull INSTANCE = new MinerNotfull();
+
+   private MinerNotfull() {
+   }
+
+   @Override
+   public EntityKind kind() {
+      return EntityKind.MINER_NOT_FULL;
+   }
+
+   @Override
+   public void executeActivity(Miner miner, WorldModel world,
+                               EventScheduler scheduler)
+   {
+      Entity notFullTarget = world.oreDispatcher().targetFor(miner,
+              scheduler.clock().currentTimeMillis());
+
+      if (notFullTarget == null)
+      {
+         world.oreDispatcher().minerIdle(miner);
+         scheduler.park(miner, EntityKind.ORE, new Activity(miner, world));
+      }
+      else if (moveToNotFull(miner, world, notFullTarget, scheduler) &&
+              miner.resourceCount() >= miner.resourceLimit())
+      {
+         miner.changeState(MinerFull.INSTANCE, world, scheduler);
+      }
+      else
+      {
+         scheduler.scheduleEvent(miner,
+                 new Activity(miner, world),
+                 miner.actionPeriod());
+      }
+   }
+
+   private static boolean moveToNotFull(Miner miner, WorldModel world,
+                                        Entity target,
+                                        EventScheduler scheduler)
+   {
+      if (miner.position().adjacent(target.position()))
+      {
+         miner.addResource();
+         world.oreDispatcher().oreCollected(miner, target);
+         world.removeEntity(target);
+         scheduler.unscheduleAllEvents(target);
+
+         return true;
+      }
+      else
+      {
+         long nextPos = miner.nextPositionByPath(world, target,
+                 scheduler.clock().currentTimeMillis(), world.emptyCells());
+
+         miner.moveTo(world, nextPos, scheduler);
+         return false;
+      }
+   }
 }
@@ -0,0 +1,18 @@
+/*
+   What a miner does on its activity; the miner swaps between the full
+   and not-full states in place instead of being replaced.
+*/
+interface MinerState
+{
+   EntityKind kind();
+
+   void executeActivity(Miner miner, WorldModel world,
+                        EventScheduler scheduler);
+
+   /* see Action.executeInRegion */
+   default boolean executeInRegion(Miner miner, WorldModel world,
+                                   Region region)
+   {
+      return false;
+   }
+}
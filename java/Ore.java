@@ -1,14 +1,25 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
-
-public class Ore {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+final class Ore extends ActiveEntity {
+   public Ore(String id, Point position, int actionPeriod, String imageKey) {
+      super(EntityKind.ORE, id, position, imageKey, actionPeriod);
+   }
+
+   /* left alone long enough, ore corrupts into a blob */
+   @Override
+   public void executeActivity(WorldModel world, EventScheduler scheduler)
+   {
+      Point pos = this.position();  // store current position before removing
+
+      world.removeEntity(this);
+      scheduler.unscheduleAllEvents(this);
+
+      OreBlob blob = new OreBlob(this.id() + Functions.BLOB_ID_SUFFIX,
+              pos, this.actionPeriod() / Functions.BLOB_PERIOD_SCALE,
+              Functions.BLOB_ANIMATION_MIN +
+                      scheduler.randomAt(pos).nextInt(
+                              Functions.BLOB_ANIMATION_MAX - Functions.BLOB_ANIMATION_MIN),
+              Functions.BLOB_KEY);
+
+      world.addEntity(blob);
+      scheduler.scheduleActions(blob, world);
+   }
 }
@@ -1,14 +1,95 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
-
-public class OreBlob {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+final class OreBlob extends AnimatedEntity {
+   public OreBlob(String id, Point position, int actionPeriod,
+                  int animationPeriod, String imageKey) {
+      super(EntityKind.ORE_BLOB, id, position, imageKey, actionPeriod,
+              animationPeriod);
+   }
+
+   @Override
+   public void executeActivity(WorldModel world, EventScheduler scheduler)
+   {
+      Point pos = this.position();
+      Entity blobTarget = world.findAdjacent(pos.x(), pos.y(),
+              EntityKind.VEIN);
+      if (blobTarget == null)
+      {
+         blobTarget = world.findNearest(pos.x(), pos.y(), EntityKind.VEIN);
+      }
+
+      if (blobTarget == null)
+      {
+         scheduler.park(this, EntityKind.VEIN, new Activity(this, world));
+         return;
+      }
+
+      long nextPeriod = this.actionPeriod();
+      Point tgtPos = blobTarget.position();
+
+      if (this.moveToOreBlob(world, blobTarget, scheduler))
+      {
+         Quake quake = new Quake(tgtPos, Functions.QUAKE_KEY);
+
+         world.addEntity(quake);
+         nextPeriod += this.actionPeriod();
+         scheduler.scheduleActions(quake, world);
+      }
+
+      scheduler.scheduleEvent(this,
+              new Activity(this, world),
+              nextPeriod);
+   }
+
+   private boolean moveToOreBlob(WorldModel world, Entity target, EventScheduler scheduler)
+   {
+      if (this.position().adjacent(target.position()))
+      {
+         world.removeEntity(target);
+         scheduler.unscheduleAllEvents(target);
+         return true;
+      }
+      else
+      {
+         DistanceField field = world.distanceField(EntityKind.VEIN);
+         int x = this.position().x();
+         int y = this.position().y();
+         long stay = Point.pack(x, y);
+         long nextPos = field != null && field.isReachable(x, y) ?
+                 field.nextStep(x, y, world.emptyOrOreCells()) : stay;
+
+         // every closer cell is taken, so try the direct step instead
+         if (nextPos == stay)
+         {
+            nextPos = this.nextPositionOreBlob(world, target.position());
+         }
+
+         this.stepTo(world, nextPos, scheduler);
+         return false;
+      }
+   }
+
+   private long nextPositionOreBlob(WorldModel world, Point destPos)
+   {
+      int x = this.position().x();
+      int y = this.position().y();
+
+      int horiz = Integer.signum(destPos.x() - x);
+      if (horiz != 0 && canOreBlobEnter(world, x + horiz, y))
+      {
+         return Point.pack(x + horiz, y);
+      }
+
+      int vert = Integer.signum(destPos.y() - y);
+      if (vert != 0 && canOreBlobEnter(world, x, y + vert))
+      {
+         return Point.pack(x, y + vert);
+      }
+
+      return Point.pack(x, y);
+   }
+
+   private static boolean canOreBlobEnter(WorldModel world, int x, int y)
+   {
+      return world.withinBounds(x, y) &&
+              world.emptyOrOreCells().canEnter(x, y);
+   }
 }
@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+   Central assignment of ore to MINER_NOT_FULL miners, so that miners
+   stop racing each other for the same ore. Claims are recorded in both
+   directions. The world reports every entity that leaves it or changes
+   kind, and a claim is dropped as soon as either side does, or when the
+   miner collects its ore; so every recorded claim is live and a search
+   for unclaimed ore only has to read the claim table. Ore left
+   unclaimed by a departing miner is reported to the world as available,
+   so miners parked for want of ore wake up for it.
+
+   The first request in each batch period reassigns every miner in one
+   greedy pass: each proposes its nearest unclaimed ore, proposals are
+   accepted shortest first, and losers propose again for a few rounds.
+   Reassigning everyone (rather than only unassigned miners) lets a
+   miner switch to ore that has appeared closer to it. Miners that need
+   ore later in the same period take their nearest unclaimed ore one at
+   a time.
+
+   The batch covers the miners that have asked for a target and have
+   neither parked nor left since, so it never scans the world. Miners
+   that found nothing to claim and parked are left out until they ask
+   again, since a parked miner would never act on ore handed to it.
+   When a batch leaves ore unclaimed while miners are parked, the ore is
+   reported available to wake them.
+*/
+final class OreDispatcher
+{
+   public static final long BATCH_MILLIS = 100;
+   private static final int BATCH_ROUNDS = 3;
+
+   private final WorldModel world;
+   private final Map<Entity, Entity> oreOf;
+   private final Map<Entity, Entity> minerOf;
+   private final Set<Entity> seeking;
+   private final Set<Entity> idle;
+   private long lastBatch;
+   private long collected;
+
+   public OreDispatcher(WorldModel world)
+   {
+      this.world = world;
+      this.oreOf = new HashMap<>();
+      this.minerOf = new HashMap<>();
+      this.seeking = new LinkedHashSet<>();
+      this.idle = new HashSet<>();
+      this.lastBatch = Long.MIN_VALUE;
+      this.collected = 0;
+   }
+
+   /* ore collected by miners that asked this dispatcher for targets */
+   public long collected()
+   {
+      return this.collected;
+   }
+
+   /*
+      Ore the miner should head for at time now, or null when every ore
+      in the world is already claimed by another miner.
+   */
+   public Entity targetFor(Entity miner, long now)
+   {
+      this.idle.remove(miner);
+      this.seeking.add(miner);
+      if (this.world.count(EntityKind.ORE) == 0)
+      {
+         return null;
+      }
+
+      long batch = Math.floorDiv(now, BATCH_MILLIS);
+      if (batch != this.lastBatch)
+      {
+         this.lastBatch = batch;
+         this.runBatch();
+      }
+
+      Entity ore = this.oreOf.get(miner);
+      if (ore != null)
+      {
+         return ore;
+      }
+
+      ore = this.nearestUnclaimed(miner);
+      if (ore != null)
+      {
+         this.claim(miner, ore);
+      }
+      return ore;
+   }
+
+   /* the miner got no target and is parking until ore turns up */
+   public void minerIdle(Entity miner)
+   {
+      this.seeking.remove(miner);
+      this.idle.add(miner);
+   }
+
+   /* the miner has taken its ore; frees both for new claims */
+   public void oreCollected(Entity miner, Entity ore)
+   {
+      this.release(miner);
+      this.release(this.minerOf.get(ore));
+      this.collected++;
+   }
+
+   /*
+      Called by the world when entity leaves it or changes kind, before
+      the change is made. Drops whatever claim the entity was part of.
+   */
+   public void entityLeft(Entity entity)
+   {
+      this.seeking.remove(entity);
+      this.idle.remove(entity);
+      this.release(this.minerOf.get(entity));
+
+      Entity ore = this.oreOf.get(entity);
+      if (ore != null)
+      {
+         this.release(entity);
+         this.world.notifyAvailable(EntityKind.ORE);
+      }
+   }
+
+   private void runBatch()
+   {
+      this.oreOf.clear();
+      this.minerOf.clear();
+
+      List<Entity> waiting = new ArrayList<>(this.seeking);
+
+      for (int round = 0; round < BATCH_ROUNDS && !waiting.isEmpty(); round++)
+      {
+         List<Proposal> proposals = new ArrayList<>(waiting.size());
+         for (Entity miner : waiting)
+         {
+            Entity ore = this.nearestUnclaimed(miner);
+            if (ore != null)
+            {
+               proposals.add(new Proposal(miner, ore,
+                       miner.position().distanceSquared(ore.position())));
+            }
+         }
+         if (proposals.isEmpty())
+         {
+            break;
+         }
+
+         // stable sort keeps request order between equal distances
+         proposals.sort((a, b) -> Long.compare(a.distance, b.distance));
+
+         List<Entity> rejected = new ArrayList<>();
+         for (Proposal proposal : proposals)
+         {
+            if (this.minerOf.containsKey(proposal.ore))
+            {
+               rejected.add(proposal.miner);
+            }
+            else
+            {
+               this.claim(proposal.miner, proposal.ore);
+            }
+         }
+         waiting = rejected;
+      }
+
+      if (!this.idle.isEmpty() &&
+              this.minerOf.size() < this.world.count(EntityKind.ORE))
+      {
+         this.world.notifyAvailable(EntityKind.ORE);
+      }
+   }
+
+   private Entity nearestUnclaimed(Entity miner)
+   {
+      if (this.minerOf.size() >= this.world.count(EntityKind.ORE))
+      {
+         return null;
+      }
+      return this.world.findNearest(miner.position().x(),
+              miner.position().y(), EntityKind.ORE,
+              ore -> !this.minerOf.containsKey(ore));
+   }
+
+   private void claim(Entity miner, Entity ore)
+   {
+      this.oreOf.put(miner, ore);
+      this.minerOf.put(ore, miner);
+   }
+
+   private void release(Entity miner)
+   {
+      if (miner == null)
+      {
+         return;
+      }
+      Entity ore = this.oreOf.remove(miner);
+      if (ore != null && this.minerOf.get(ore) == miner)
+      {
+         this.minerOf.remove(ore);
+      }
+   }
+
+   private static final class Proposal
+   {
+      final Entity miner;
+      final Entity ore;
+      final long distance;
+
+      Proposal(Entity miner, Entity ore, long distance)
+      {
+         this.miner = miner;
+         this.ore = ore;
+         this.distance = distance;
+      }
+   }
+}
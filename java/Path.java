@@ -0,0 +1,53 @@
+/*
+   Route cached by a moving entity: the cells still to visit, in order,
+   and the target it was planned toward. Steps are checked as they are
+   taken, so a path is only replanned when the cell it needs next is
+   taken or the target itself changes.
+*/
+final class Path
+{
+   private final Entity target;
+   private final Point targetPos;
+   private final int[] xs;
+   private final int[] ys;
+   private int next;
+
+   public Path(Entity target, int[] xs, int[] ys)
+   {
+      this.target = target;
+      this.targetPos = target.position();
+      this.xs = xs;
+      this.ys = ys;
+      this.next = 0;
+   }
+
+   public boolean leadsTo(Entity target)
+   {
+      return this.target == target && this.targetPos.equals(target.position());
+   }
+
+   public boolean hasNext()
+   {
+      return this.next < this.xs.length;
+   }
+
+   public int nextX()
+   {
+      return this.xs[this.next];
+   }
+
+   public int nextY()
+   {
+      return this.ys[this.next];
+   }
+
+   public void advance()
+   {
+      this.next++;
+   }
+
+   public int remaining()
+   {
+      return this.xs.length - this.next;
+   }
+}
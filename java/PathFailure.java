@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/*
+   A path search toward target that found nothing, remembered by the
+   entity that ran it so it is not repeated while it would fail again.
+   When the search was walled in, the failure holds for as long as every
+   cell of that wall stays closed to the search. When every cell next to
+   the target is closed, those few cells are wall enough, and unlike a
+   wall drawn around the searcher they are not disturbed by entities
+   moving about elsewhere. Otherwise nothing says when a retry could
+   succeed, so the failure holds until retryAt, the retry delay doubling
+   with each failure in a row.
+*/
+final class PathFailure
+{
+   private static final long FIRST_BACKOFF_MILLIS = 1000;
+   private static final long MAX_BACKOFF_MILLIS = 32000;
+
+   private final Entity target;
+   private final Point targetPos;
+   private final PathFinder.Passability passability;
+   private final long[] boundary;
+   private final long backoff;
+   private final long retryAt;
+
+   private PathFailure(Entity target, PathFinder.Passability passability,
+                       long[] boundary, long backoff, long now)
+   {
+      this.target = target;
+      this.targetPos = target.position();
+      this.passability = passability;
+      this.boundary = boundary;
+      this.backoff = backoff;
+      this.retryAt = now + backoff;
+   }
+
+   /*
+      The failure of the search through passability toward target that
+      world.findPath has just reported at time now. previous is the last
+      failure toward the same target, if any, for the retry delay to
+      back off from.
+   */
+   public static PathFailure of(WorldModel world, Entity target,
+                                PathFinder.Passability passability,
+                                long now, PathFailure previous)
+   {
+      long[] boundary = enclosure(world, target.position(), passability);
+      if (boundary == null)
+      {
+         boundary = world.failedPathBoundary();
+      }
+
+      long backoff = previous == null ? FIRST_BACKOFF_MILLIS :
+              Math.min(previous.backoff * 2, MAX_BACKOFF_MILLIS);
+      return new PathFailure(target, passability, boundary, backoff, now);
+   }
+
+   public Entity target()
+   {
+      return this.target;
+   }
+
+   /* whether the same search would still fail at time now */
+   public boolean holds(long now)
+   {
+      if (!this.targetPos.equals(this.target.position()))
+      {
+         return false;
+      }
+      if (this.boundary == null)
+      {
+         return now < this.retryAt;
+      }
+
+      for (long cell : this.boundary)
+      {
+         if (this.passability.canEnter(Point.unpackX(cell),
+                 Point.unpackY(cell)))
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /* the cells next to pos when none of them can be entered, else null */
+   private static long[] enclosure(WorldModel world, Point pos,
+                                   PathFinder.Passability passability)
+   {
+      long[] cells = new long[4];
+      int count = 0;
+      for (int i = 0; i < 4; i++)
+      {
+         int x = pos.x() + (i == 0 ? -1 : i == 1 ? 1 : 0);
+         int y = pos.y() + (i == 2 ? -1 : i == 3 ? 1 : 0);
+         if (world.withinBounds(x, y))
+         {
+            if (passability.canEnter(x, y))
+            {
+               return null;
+            }
+            cells[count++] = Point.pack(x, y);
+         }
+      }
+      return Arrays.copyOf(cells, count);
+   }
+}
@@ -0,0 +1,273 @@
+import java.util.Arrays;
+
+/*
+   A* over the occupancy grid, four-connected with unit step costs, to
+   any cell next to a target entity or to a given cell. Search state is
+   kept between calls and invalidated by bumping a generation counter, so
+   a search does not clear or allocate per-cell arrays.
+
+   A search that fails by running out of cells to explore also keeps
+   the blocked cells it ran into. Those cells wall in everything the
+   search could reach, so a repeat of it fails too until one of them
+   becomes enterable.
+*/
+final class PathFinder
+{
+   interface Passability
+   {
+      boolean canEnter(int x, int y);
+   }
+
+   private static final int MAX_EXPANSIONS = 20000;
+   private static final int MAX_BOUNDARY = 1024;
+   private static final int[] DX = {-1, 1, 0, 0};
+   private static final int[] DY = {0, 0, -1, 1};
+
+   private final int numRows;
+   private final int numCols;
+   private final int[] cost;
+   private final int[] parent;
+   private final int[] seen;
+   private final int[] closed;
+   private final int[] blocked;
+   private int generation;
+   private long[] open;
+   private int openSize;
+   private int[] boundary;
+   private int boundarySize;
+   private boolean exhausted;
+
+   public PathFinder(int numRows, int numCols)
+   {
+      this.numRows = numRows;
+      this.numCols = numCols;
+      int cells = numRows * numCols;
+      this.cost = new int[cells];
+      this.parent = new int[cells];
+      this.seen = new int[cells];
+      this.closed = new int[cells];
+      this.blocked = new int[cells];
+      this.generation = 0;
+      this.open = new long[64];
+      this.openSize = 0;
+      this.boundary = new int[64];
+      this.boundarySize = 0;
+      this.exhausted = false;
+   }
+
+   /*
+      Shortest path from start to a cell adjacent to target, or null when
+      there is none within the expansion budget. The returned path does
+      not include start.
+   */
+   public Path findPath(Point start, Entity target, Passability passability)
+   {
+      Point goal = target.position();
+      int[] cells = this.findCells(start.x(), start.y(), goal.x(), goal.y(),
+              1, MAX_EXPANSIONS, passability);
+      if (cells == null)
+      {
+         return null;
+      }
+
+      int[] xs = new int[cells.length];
+      int[] ys = new int[cells.length];
+      for (int i = 0; i < cells.length; i++)
+      {
+         xs[i] = cells[i] % this.numCols;
+         ys[i] = cells[i] / this.numCols;
+      }
+      return new Path(target, xs, ys);
+   }
+
+   /*
+      Cells (y * numCols + x) of the shortest path from (sx, sy) to any
+      cell exactly goalDistance steps from (gx, gy), excluding the start,
+      or null when there is none within maxExpansions expanded cells.
+   */
+   public int[] findCells(int sx, int sy, int gx, int gy, int goalDistance,
+                          int maxExpansions, Passability passability)
+   {
+      if (++this.generation == 0)
+      {
+         Arrays.fill(this.seen, 0);
+         Arrays.fill(this.closed, 0);
+         Arrays.fill(this.blocked, 0);
+         this.generation = 1;
+      }
+      this.openSize = 0;
+      this.boundarySize = 0;
+      this.exhausted = false;
+
+      int startCell = sy * this.numCols + sx;
+      this.cost[startCell] = 0;
+      this.parent[startCell] = -1;
+      this.seen[startCell] = this.generation;
+      this.push(heuristic(sx, sy, gx, gy, goalDistance), startCell);
+
+      int expansions = 0;
+      while (this.openSize > 0)
+      {
+         int cell = this.pop();
+         if (this.closed[cell] == this.generation)
+         {
+            continue;
+         }
+         this.closed[cell] = this.generation;
+
+         int cx = cell % this.numCols;
+         int cy = cell / this.numCols;
+         if (Math.abs(cx - gx) + Math.abs(cy - gy) == goalDistance)
+         {
+            return this.reconstruct(cell);
+         }
+
+         if (++expansions > maxExpansions)
+         {
+            return null;
+         }
+
+         int nextCost = this.cost[cell] + 1;
+         for (int i = 0; i < DX.length; i++)
+         {
+            int x = cx + DX[i];
+            int y = cy + DY[i];
+            if (x < 0 || x >= this.numCols || y < 0 || y >= this.numRows)
+            {
+               continue;
+            }
+
+            int neighbour = y * this.numCols + x;
+            if (!passability.canEnter(x, y))
+            {
+               this.addBoundary(neighbour);
+               continue;
+            }
+
+            if (this.seen[neighbour] != this.generation ||
+                    nextCost < this.cost[neighbour])
+            {
+               this.seen[neighbour] = this.generation;
+               this.cost[neighbour] = nextCost;
+               this.parent[neighbour] = cell;
+               this.push(nextCost + heuristic(x, y, gx, gy, goalDistance),
+                       neighbour);
+            }
+         }
+      }
+
+      this.exhausted = true;
+      return null;
+   }
+
+   /*
+      The blocked cells (packed, see Point.pack) that walled in the last
+      search, when it failed by running out of cells to explore. Null if
+      it succeeded, gave up at the expansion budget, or was walled in by
+      more than MAX_BOUNDARY cells.
+   */
+   public long[] failureBoundary()
+   {
+      if (!this.exhausted || this.boundarySize > MAX_BOUNDARY)
+      {
+         return null;
+      }
+
+      long[] cells = new long[this.boundarySize];
+      for (int i = 0; i < cells.length; i++)
+      {
+         int cell = this.boundary[i];
+         cells[i] = Point.pack(cell % this.numCols, cell / this.numCols);
+      }
+      return cells;
+   }
+
+   private void addBoundary(int cell)
+   {
+      if (this.blocked[cell] == this.generation)
+      {
+         return;
+      }
+      this.blocked[cell] = this.generation;
+
+      if (this.boundarySize == this.boundary.length)
+      {
+         this.boundary = Arrays.copyOf(this.boundary,
+                 this.boundary.length * 2);
+      }
+      this.boundary[this.boundarySize++] = cell;
+   }
+
+   /* Manhattan distance to the nearest cell goalDistance from the goal */
+   private static int heuristic(int x, int y, int gx, int gy,
+                                int goalDistance)
+   {
+      return Math.max(0, Math.abs(x - gx) + Math.abs(y - gy) - goalDistance);
+   }
+
+   private int[] reconstruct(int goalCell)
+   {
+      int steps = this.cost[goalCell];
+      int[] cells = new int[steps];
+
+      int cell = goalCell;
+      for (int i = steps - 1; i >= 0; i--)
+      {
+         cells[i] = cell;
+         cell = this.parent[cell];
+      }
+
+      return cells;
+   }
+
+   private void push(int priority, int cell)
+   {
+      if (this.openSize == this.open.length)
+      {
+         this.open = Arrays.copyOf(this.open, this.open.length * 2);
+      }
+
+      long key = ((long)priority << 32) | cell;
+      int index = this.openSize++;
+      while (index > 0)
+      {
+         int up = (index - 1) >>> 1;
+         if (this.open[up] <= key)
+         {
+            break;
+         }
+         this.open[index] = this.open[up];
+         index = up;
+      }
+      this.open[index] = key;
+   }
+
+   private int pop()
+   {
+      long first = this.open[0];
+      long last = this.open[--this.openSize];
+
+      int index = 0;
+      int half = this.openSize >>> 1;
+      while (index < half)
+      {
+         int child = 2 * index + 1;
+         if (child + 1 < this.openSize && this.open[child + 1] < this.open[child])
+         {
+            child++;
+         }
+         if (last <= this.open[child])
+         {
+            break;
+         }
+         this.open[index] = this.open[child];
+         index = child;
+      }
+      if (this.openSize > 0)
+      {
+         this.open[index] = last;
+      }
+
+      return (int)first;
+   }
+}
@@ -1,5 +1,8 @@
 final class Point
 {
+   /* packed value that no cell can have; see pack */
+   public static final long NO_POSITION = Long.MIN_VALUE;
+
    private final int x;
    private final int y;
 
@@ -45,6 +48,22 @@ final class Point
       return deltaX * deltaX + deltaY * deltaY;
    }
 
+   /* x and y in one long, for coordinate code that must not allocate */
+   public static long pack(int x, int y)
+   {
+      return ((long)y << 32) | (x & 0xffffffffL);
+   }
+
+   public static int unpackX(long packed)
+   {
+      return (int)packed;
+   }
+
+   public static int unpackY(long packed)
+   {
+      return (int)(packed >> 32);
+   }
+
    public boolean adjacent(Point p2)
    {
       return (this.x == p2.x && Math.abs(this.y - p2.y) == 1) ||
@@ -1,13 +1,19 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
-public class Quake {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+final class Quake extends AnimatedEntity {
+   public Quake(Point position, String imageKey) {
+      super(EntityKind.QUAKE, Functions.QUAKE_ID, position, imageKey,
+              Functions.QUAKE_ACTION_PERIOD, Functions.QUAKE_ANIMATION_PERIOD);
+   }
+
+   @Override
+   public int animationRepeatCount() {
+      return Functions.QUAKE_ANIMATION_REPEAT_COUNT;
+   }
+
+   /* a quake only lasts until its first action */
+   @Override
+   public void executeActivity(WorldModel world, EventScheduler scheduler)
+   {
+      scheduler.unscheduleAllEvents(this);
+      world.removeEntity(this);
+   }
 }
@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+   A SIZE x SIZE square of the world as a RegionExecutor runs it: the
+   events due in it this window, the events those schedule, held back
+   until the serial phase queues them, and the region's own random
+   stream. Regions line up with SpatialIndex buckets, so a move inside
+   one never changes buckets, which is the one index write that would
+   reach past the cells it moves between.
+*/
+final class Region
+{
+   static final int SIZE = SpatialIndex.BUCKET_SIZE;
+
+   private final EventScheduler scheduler;
+   private final int left;
+   private final int top;
+   private final Random random;
+   private final List<Event> due;
+   private final List<Scheduled> scheduled;
+   private int ran;
+   private long now;
+
+   public Region(EventScheduler scheduler, int left, int top, long seed)
+   {
+      this.scheduler = scheduler;
+      this.left = left;
+      this.top = top;
+      this.random = new Random(seed);
+      this.due = new ArrayList<>();
+      this.scheduled = new ArrayList<>();
+   }
+
+   /* only for reads that change nothing, such as emptyOrParkedCells */
+   public EventScheduler scheduler()
+   {
+      return this.scheduler;
+   }
+
+   public Random random()
+   {
+      return this.random;
+   }
+
+   /* whether (x, y) and the four cells next to it are all in the region */
+   public boolean surrounds(int x, int y)
+   {
+      return x > this.left && x < this.left + SIZE - 1 &&
+              y > this.top && y < this.top + SIZE - 1;
+   }
+
+   /*
+      As EventScheduler.scheduleEvent, counting the period from the time
+      of the event being run; the event is queued in the serial phase.
+   */
+   public void scheduleEvent(Entity entity, Action action, long afterPeriod)
+   {
+      this.scheduled.add(new Scheduled(this.now, entity, action,
+              afterPeriod));
+   }
+
+   boolean isIdle()
+   {
+      return this.due.isEmpty();
+   }
+
+   void add(Event event)
+   {
+      this.due.add(event);
+   }
+
+   /* runs the due events in order up to the first that must run serially */
+   void run()
+   {
+      this.ran = 0;
+      for (Event event : this.due)
+      {
+         this.now = event.time();
+         if (!event.action().executeInRegion(this))
+         {
+            return;
+         }
+         this.ran++;
+      }
+   }
+
+   /*
+      Serial phase: queues what the run scheduled and hands the events it
+      did not get to over to deferred. Returns the number it ran.
+   */
+   int finish(List<Event> deferred)
+   {
+      for (Scheduled event : this.scheduled)
+      {
+         this.scheduler.scheduleEventAfter(event.start, event.entity,
+                 event.action, event.afterPeriod);
+      }
+      this.scheduled.clear();
+
+      deferred.addAll(this.due.subList(this.ran, this.due.size()));
+      this.due.clear();
+      return this.ran;
+   }
+
+   private static final class Scheduled
+   {
+      final long start;
+      final Entity entity;
+      final Action action;
+      final long afterPeriod;
+
+      Scheduled(long start, Entity entity, Action action, long afterPeriod)
+      {
+         this.start = start;
+         this.entity = entity;
+         this.action = action;
+         this.afterPeriod = afterPeriod;
+      }
+   }
+}
@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+   Runs a world's events WINDOW_MILLIS at a time in place of
+   EventScheduler.updateOnTime, grouping each window's due events by the
+   Region their entity stands in. The regions first run their events on
+   a ForkJoinPool, each in order until it meets one that would read or
+   write outside it (see Action.executeInRegion). Then, on the calling
+   thread, the events the regions scheduled are queued region by region
+   and the rest of the window's events run in due order.
+
+   Regions write disjoint cells and read only their own cells and state
+   nothing writes during that phase, so the outcome does not depend on
+   the number of threads: a seed gives the same world on any pool, one
+   thread included. It is not the world updateOnTime gives for the seed,
+   since a window's region events run before its serial ones and random
+   numbers come from per-region streams (see EventScheduler.randomAt).
+
+   Frame steps run in regions and dirty tracking is not thread-safe, so
+   nothing may render the world while this runs it.
+*/
+final class RegionExecutor
+{
+   private static final long WINDOW_MILLIS = 10;
+
+   private final WorldModel world;
+   private final EventScheduler scheduler;
+   private final SimulatedClock clock;
+   private final ForkJoinPool pool;
+   private final long seed;
+   private final ChunkedGrid<Region> regions;
+   private final List<Region> active;
+   private final List<Event> deferred;
+   private final EventComparator dueOrder;
+   private long regionEvents;
+   private long parallelWindows;
+
+   /* threads of 1 runs the regions on the calling thread */
+   public RegionExecutor(WorldModel world, EventScheduler scheduler,
+                         SimulatedClock clock, int threads, long seed)
+   {
+      this.world = world;
+      this.scheduler = scheduler;
+      this.clock = clock;
+      this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+      this.seed = seed;
+      this.regions = new ChunkedGrid<>(null);
+      this.active = new ArrayList<>();
+      this.deferred = new ArrayList<>();
+      this.dueOrder = new EventComparator();
+      scheduler.setRegions(this);
+   }
+
+   /* events that ran inside their region rather than serially */
+   public long regionEvents()
+   {
+      return this.regionEvents;
+   }
+
+   /* windows whose regions were handed to the pool */
+   public long parallelWindows()
+   {
+      return this.parallelWindows;
+   }
+
+   /*
+      Runs every event due before endTime, a window at a time, and
+      leaves the clock at endTime. Returns the number of events run.
+   */
+   public long runUntil(long endTime)
+   {
+      long executed = 0;
+      long next = this.scheduler.nextEventTime();
+
+      while (next < endTime)
+      {
+         this.clock.advanceTo(Math.max(next, this.clock.currentTimeMillis()));
+         executed += this.runWindow(Math.min(
+                 this.clock.currentTimeMillis() + WINDOW_MILLIS, endTime));
+         next = this.scheduler.nextEventTime();
+      }
+
+      this.clock.advanceTo(Math.max(endTime, this.clock.currentTimeMillis()));
+      return executed;
+   }
+
+   Random randomAt(Point pos)
+   {
+      return this.regionAt(pos).random();
+   }
+
+   private int runWindow(long end)
+   {
+      Event event;
+      while ((event = this.scheduler.pollDue(end)) != null)
+      {
+         Region region = this.regionAt(event.entity().position());
+         if (region.isIdle())
+         {
+            this.active.add(region);
+         }
+         region.add(event);
+      }
+
+      if (this.pool != null && this.active.size() > 1)
+      {
+         this.pool.invoke(new RunRegions(0, this.active.size()));
+         this.parallelWindows++;
+      }
+      else
+      {
+         for (Region region : this.active)
+         {
+            region.run();
+         }
+      }
+
+      int executed = 0;
+      for (Region region : this.active)
+      {
+         executed += region.finish(this.deferred);
+      }
+      this.active.clear();
+      this.regionEvents += executed;
+
+      this.deferred.sort(this.dueOrder);
+      for (Event next : this.deferred)
+      {
+         // an event earlier in the window may have removed the entity
+         if (this.world.entities().contains(next.entity()))
+         {
+            this.clock.advanceTo(Math.max(next.time(),
+                    this.clock.currentTimeMillis()));
+            next.action().executeAction(this.scheduler);
+            executed++;
+         }
+      }
+      this.deferred.clear();
+
+      return executed;
+   }
+
+   /*
+      The region holding pos, created on first use with every cell's
+      shared Point made, so that moves inside it never write the
+      world's point grid.
+   */
+   private Region regionAt(Point pos)
+   {
+      int column = Math.floorDiv(pos.x(), Region.SIZE);
+      int row = Math.floorDiv(pos.y(), Region.SIZE);
+
+      Region region = this.regions.get(column, row);
+      if (region == null)
+      {
+         int left = column * Region.SIZE;
+         int top = row * Region.SIZE;
+         region = new Region(this.scheduler, left, top,
+                 this.seed ^ Point.pack(column, row) * 0x9E3779B97F4A7C15L);
+         this.regions.set(column, row, region);
+
+         for (int y = top; y < top + Region.SIZE; y++)
+         {
+            for (int x = left; x < left + Region.SIZE; x++)
+            {
+               if (this.world.withinBounds(x, y))
+               {
+                  this.world.pointAt(x, y);
+               }
+            }
+         }
+      }
+      return region;
+   }
+
+   private final class RunRegions extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1;
+
+      private final int from;
+      private final int to;
+
+      RunRegions(int from, int to)
+      {
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (this.to - this.from == 1)
+         {
+            RegionExecutor.this.active.get(this.from).run();
+            return;
+         }
+
+         int middle = (this.from + this.to) >>> 1;
+         invokeAll(new RunRegions(this.from, middle),
+                 new RunRegions(middle, this.to));
+      }
+   }
+}
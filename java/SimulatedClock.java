@@ -0,0 +1,29 @@
+/*
+   Clock that only moves when told to, so a driver can jump straight from
+   one event time to the next instead of waiting on the wall clock.
+*/
+final class SimulatedClock
+   implements Clock
+{
+   private long time;
+
+   public SimulatedClock(long startTime)
+   {
+      this.time = startTime;
+   }
+
+   public long currentTimeMillis()
+   {
+      return this.time;
+   }
+
+   public void advanceTo(long time)
+   {
+      if (time < this.time)
+      {
+         throw new IllegalArgumentException("simulated time cannot go backwards");
+      }
+
+      this.time = time;
+   }
+}
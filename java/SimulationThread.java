@@ -0,0 +1,120 @@
+/*
+   Runs the event scheduler on its own thread at a fixed rate and, after
+   each tick, publishes a WorldSnapshot of the area around the view for
+   the renderer. The two threads share nothing else: the renderer only
+   reads the latest snapshot through a volatile field and tells the
+   simulation where the view is through another.
+
+   The snapshot extends MARGIN cells past the view on every side, so a
+   view shifted by a few cells is still covered until the next tick.
+*/
+final class SimulationThread
+   implements Runnable
+{
+   private static final int MARGIN = 4;
+
+   private final WorldModel world;
+   private final EventScheduler scheduler;
+   private final Clock clock;
+   private final long tickMillis;
+   private final int viewCols;
+   private final int viewRows;
+
+   private volatile long viewOrigin;
+   private volatile WorldSnapshot snapshot;
+   private volatile boolean running;
+   private Thread thread;
+
+   public SimulationThread(WorldModel world, EventScheduler scheduler,
+      Clock clock, int ticksPerSecond, int viewCols, int viewRows)
+   {
+      if (ticksPerSecond <= 0)
+      {
+         throw new IllegalArgumentException(
+                 "ticks per second must be positive");
+      }
+      this.world = world;
+      this.scheduler = scheduler;
+      this.clock = clock;
+      this.tickMillis = Math.max(1, 1000 / ticksPerSecond);
+      this.viewCols = viewCols;
+      this.viewRows = viewRows;
+      this.viewOrigin = Point.pack(0, 0);
+   }
+
+   /* where the top-left cell of the view is; read on the next tick */
+   public void setViewOrigin(int col, int row)
+   {
+      this.viewOrigin = Point.pack(col, row);
+   }
+
+   public WorldSnapshot latest()
+   {
+      return this.snapshot;
+   }
+
+   public void start()
+   {
+      this.publish(this.clock.currentTimeMillis());
+      this.running = true;
+      this.thread = new Thread(this, "simulation");
+      this.thread.setDaemon(true);
+      this.thread.start();
+   }
+
+   /* returns once the current tick, if any, has finished */
+   public void stop()
+   {
+      this.running = false;
+      if (this.thread != null)
+      {
+         this.thread.interrupt();
+         try
+         {
+            this.thread.join();
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   public void run()
+   {
+      long next = this.clock.currentTimeMillis();
+      while (this.running)
+      {
+         long now = this.clock.currentTimeMillis();
+         this.scheduler.updateOnTime(now);
+         this.publish(now);
+
+         // a late tick starts the schedule over rather than bunching up
+         next += this.tickMillis;
+         if (next <= now)
+         {
+            next = now + this.tickMillis;
+         }
+         long delay = next - this.clock.currentTimeMillis();
+         if (delay > 0)
+         {
+            try
+            {
+               Thread.sleep(delay);
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+         }
+      }
+   }
+
+   private void publish(long now)
+   {
+      long origin = this.viewOrigin;
+      this.snapshot = WorldSnapshot.capture(this.world,
+              Point.unpackX(origin) - MARGIN, Point.unpackY(origin) - MARGIN,
+              this.viewCols + 2 * MARGIN, this.viewRows + 2 * MARGIN, now);
+   }
+}
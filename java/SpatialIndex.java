@@ -0,0 +1,229 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/*
+   Uniform grid of buckets, kept separately for every EntityKind, so a
+   nearest-of-kind query only visits buckets in expanding rings around
+   the query point instead of every entity in the world. Bucket grids
+   are chunked, so a huge, mostly empty map only pays for the regions
+   that hold entities of a kind.
+*/
+final class SpatialIndex
+{
+   static final int BUCKET_SIZE = 8;
+   private static final int MAX_SPARE_BUCKETS = 64;
+
+   private final int bucketCols;
+   private final int bucketRows;
+   private final Map<EntityKind, ChunkedGrid<List<Entity>>> buckets;
+   private final int[] counts;
+   // emptied bucket lists, reused so walkers crossing buckets do not allocate
+   private final ArrayDeque<List<Entity>> spareBuckets;
+
+   public SpatialIndex(int numRows, int numCols)
+   {
+      this.bucketCols = (numCols + BUCKET_SIZE - 1) / BUCKET_SIZE;
+      this.bucketRows = (numRows + BUCKET_SIZE - 1) / BUCKET_SIZE;
+      this.buckets = new EnumMap<>(EntityKind.class);
+      this.counts = new int[EntityKind.values().length];
+      this.spareBuckets = new ArrayDeque<>(MAX_SPARE_BUCKETS);
+   }
+
+   public void add(Entity entity)
+   {
+      this.bucketFor(entity.kind(), entity.position(), true).add(entity);
+      this.counts[entity.kind().ordinal()]++;
+   }
+
+   public int count(EntityKind kind)
+   {
+      return this.counts[kind.ordinal()];
+   }
+
+   public void remove(Entity entity)
+   {
+      List<Entity> bucket = this.bucketFor(entity.kind(), entity.position(),
+              false);
+      if (bucket != null && removeIdentity(bucket, entity))
+      {
+         this.counts[entity.kind().ordinal()]--;
+         this.releaseIfEmpty(entity.kind(), entity.position(), bucket);
+      }
+   }
+
+   public void move(Entity entity, Point from, Point to)
+   {
+      if (bucketX(from) == bucketX(to) && bucketY(from) == bucketY(to))
+      {
+         return;
+      }
+
+      // joining the new bucket first keeps a lone walker's chunk alive
+      List<Entity> bucket = this.bucketFor(entity.kind(), from, false);
+      if (bucket != null && removeIdentity(bucket, entity))
+      {
+         this.bucketFor(entity.kind(), to, true).add(entity);
+         this.releaseIfEmpty(entity.kind(), from, bucket);
+      }
+   }
+
+   public Optional<Entity> findNearest(Point pos, EntityKind kind)
+   {
+      return Optional.ofNullable(this.findNearest(pos.x(), pos.y(), kind));
+   }
+
+   /* nearest entity of kind to (px, py), or null when there is none */
+   public Entity findNearest(int px, int py, EntityKind kind)
+   {
+      return this.findNearest(px, py, kind, null);
+   }
+
+   /*
+      As above, skipping entities that accept (when given) rejects. The
+      search stops once it has looked at every entity of the kind, so a
+      predicate that rejects them all costs rings out to the farthest
+      entity rather than the whole grid.
+   */
+   public Entity findNearest(int px, int py, EntityKind kind,
+                             Predicate<Entity> accept)
+   {
+      ChunkedGrid<List<Entity>> ofKind = this.buckets.get(kind);
+      int total = this.counts[kind.ordinal()];
+      if (ofKind == null || total == 0)
+      {
+         return null;
+      }
+
+      int bx = clamp(px / BUCKET_SIZE, this.bucketCols);
+      int by = clamp(py / BUCKET_SIZE, this.bucketRows);
+      int maxRing = Math.max(this.bucketCols, this.bucketRows);
+
+      Entity nearest = null;
+      long nearestDistance = Long.MAX_VALUE;
+      int seen = 0;
+
+      for (int ring = 0; ring <= maxRing && seen < total; ring++)
+      {
+         // nothing in this ring or beyond can be closer than this
+         long gap = Math.max(0, (ring - 1) * BUCKET_SIZE + 1);
+         if (nearest != null && nearestDistance <= gap * gap)
+         {
+            break;
+         }
+
+         for (int y = by - ring; y <= by + ring; y++)
+         {
+            if (y < 0 || y >= this.bucketRows)
+            {
+               continue;
+            }
+
+            boolean edgeRow = y == by - ring || y == by + ring;
+            int step = edgeRow ? 1 : 2 * ring;
+
+            for (int x = bx - ring; x <= bx + ring; x += step)
+            {
+               if (x < 0 || x >= this.bucketCols)
+               {
+                  continue;
+               }
+
+               List<Entity> bucket = ofKind.get(x, y);
+               if (bucket == null)
+               {
+                  continue;
+               }
+
+               seen += bucket.size();
+               for (int i = 0; i < bucket.size(); i++)
+               {
+                  Entity other = bucket.get(i);
+                  long dx = other.position().x() - px;
+                  long dy = other.position().y() - py;
+                  long distance = dx * dx + dy * dy;
+                  if (distance < nearestDistance &&
+                          (accept == null || accept.test(other)))
+                  {
+                     nearest = other;
+                     nearestDistance = distance;
+                  }
+               }
+            }
+         }
+      }
+
+      return nearest;
+   }
+
+   private List<Entity> bucketFor(EntityKind kind, Point pos, boolean create)
+   {
+      ChunkedGrid<List<Entity>> ofKind = this.buckets.get(kind);
+      if (ofKind == null)
+      {
+         if (!create)
+         {
+            return null;
+         }
+         ofKind = new ChunkedGrid<>(null);
+         this.buckets.put(kind, ofKind);
+      }
+
+      List<Entity> bucket = ofKind.get(bucketX(pos), bucketY(pos));
+      if (bucket == null && create)
+      {
+         bucket = this.spareBuckets.isEmpty() ? new ArrayList<>() :
+                 this.spareBuckets.pop();
+         ofKind.set(bucketX(pos), bucketY(pos), bucket);
+      }
+      return bucket;
+   }
+
+   private void releaseIfEmpty(EntityKind kind, Point pos,
+                               List<Entity> bucket)
+   {
+      if (bucket.isEmpty())
+      {
+         this.buckets.get(kind).set(bucketX(pos), bucketY(pos), null);
+         if (this.spareBuckets.size() < MAX_SPARE_BUCKETS)
+         {
+            this.spareBuckets.push(bucket);
+         }
+      }
+   }
+
+   private static boolean removeIdentity(List<Entity> bucket, Entity entity)
+   {
+      for (int i = 0; i < bucket.size(); i++)
+      {
+         if (bucket.get(i) == entity)
+         {
+            // order within a bucket does not matter
+            int last = bucket.size() - 1;
+            bucket.set(i, bucket.get(last));
+            bucket.remove(last);
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static int bucketX(Point pos)
+   {
+      return pos.x() / BUCKET_SIZE;
+   }
+
+   private static int bucketY(Point pos)
+   {
+      return pos.y() / BUCKET_SIZE;
+   }
+
+   private static int clamp(int value, int size)
+   {
+      return Math.min(size - 1, Math.max(value, 0));
+   }
+}
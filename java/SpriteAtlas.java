@@ -0,0 +1,121 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/*
+   Every loaded frame packed into one texture, so a renderer draws
+   sub-regions of a single image instead of switching images on each
+   call. Frames are placed on shelves, tallest first, into a square-ish
+   texture whose width is a power of two, with a transparent gap between
+   neighbours so filtered sampling does not bleed across frames.
+
+   Regions are looked up by frame identity; a frame that is not in the
+   atlas is drawn directly.
+*/
+final class SpriteAtlas
+{
+   private static final int PADDING = 1;
+   private static final int OPAQUE = 0xff000000;
+
+   private final PImage texture;
+   private final Map<PImage, int[]> regions;
+
+   private SpriteAtlas(PImage texture, Map<PImage, int[]> regions)
+   {
+      this.texture = texture;
+      this.regions = regions;
+   }
+
+   public PImage texture()
+   {
+      return this.texture;
+   }
+
+   public int size()
+   {
+      return this.regions.size();
+   }
+
+   public void draw(PApplet screen, PImage frame, float x, float y)
+   {
+      int[] region = this.regions.get(frame);
+      if (region == null)
+      {
+         screen.image(frame, x, y);
+         return;
+      }
+
+      int u = region[0];
+      int v = region[1];
+      int w = region[2];
+      int h = region[3];
+      screen.image(this.texture, x, y, w, h, u, v, u + w, v + h);
+   }
+
+   public static SpriteAtlas pack(PApplet screen, Collection<PImage> frames)
+   {
+      List<PImage> sorted = new ArrayList<>(new LinkedHashSet<>(frames));
+      sorted.sort((a, b) -> Integer.compare(b.height, a.height));
+
+      long area = 0;
+      int widest = 1;
+      for (PImage frame : sorted)
+      {
+         area += (long)(frame.width + PADDING) * (frame.height + PADDING);
+         widest = Math.max(widest, frame.width + PADDING);
+      }
+      int width = Integer.highestOneBit(
+              Math.max(widest, (int)Math.ceil(Math.sqrt(area))) * 2 - 1);
+
+      Map<PImage, int[]> regions = new IdentityHashMap<>();
+      int x = 0;
+      int y = 0;
+      int shelfHeight = 0;
+      for (PImage frame : sorted)
+      {
+         if (x + frame.width > width)
+         {
+            x = 0;
+            y += shelfHeight + PADDING;
+            shelfHeight = 0;
+         }
+         regions.put(frame, new int[] {x, y, frame.width, frame.height});
+         x += frame.width + PADDING;
+         shelfHeight = Math.max(shelfHeight, frame.height);
+      }
+
+      PImage texture = screen.createImage(width, Math.max(1, y + shelfHeight),
+              PApplet.ARGB);
+      texture.loadPixels();
+      for (Map.Entry<PImage, int[]> entry : regions.entrySet())
+      {
+         copyFrame(entry.getKey(), texture, entry.getValue()[0],
+                 entry.getValue()[1]);
+      }
+      texture.updatePixels();
+
+      return new SpriteAtlas(texture, regions);
+   }
+
+   /* RGB frames ignore their alpha bits, so they are made opaque here */
+   private static void copyFrame(PImage frame, PImage texture, int x, int y)
+   {
+      frame.loadPixels();
+      int opaque = frame.format == PApplet.RGB ? OPAQUE : 0;
+      for (int row = 0; row < frame.height; row++)
+      {
+         int from = row * frame.width;
+         int to = (y + row) * texture.width + x;
+         for (int col = 0; col < frame.width; col++)
+         {
+            texture.pixels[to + col] = frame.pixels[from + col] | opaque;
+         }
+      }
+   }
+}
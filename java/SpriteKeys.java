@@ -0,0 +1,41 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+   Interns image keys as small dense ints so a front end can resolve an
+   entity's sprite with an array index instead of a string hash. Ids are
+   shared by every world in the process and never reused.
+*/
+final class SpriteKeys
+{
+   private static final Map<String, Integer> ids = new HashMap<>();
+   private static final List<String> keys = new ArrayList<>();
+
+   private SpriteKeys()
+   {
+   }
+
+   public static synchronized int idOf(String key)
+   {
+      Integer id = ids.get(key);
+      if (id == null)
+      {
+         id = keys.size();
+         keys.add(key);
+         ids.put(key, id);
+      }
+      return id;
+   }
+
+   public static synchronized String keyOf(int id)
+   {
+      return keys.get(id);
+   }
+
+   public static synchronized int count()
+   {
+      return keys.size();
+   }
+}
@@ -0,0 +1,39 @@
+import java.util.Arrays;
+import java.util.List;
+
+import processing.core.PImage;
+
+/*
+   Immutable, array-backed animation frames for one image key. A single
+   sequence is shared by everything drawn with that key, and frame lookup
+   is an array index rather than a list walk.
+*/
+final class SpriteSequence
+{
+   private final PImage[] frames;
+
+   public SpriteSequence(List<PImage> frames)
+   {
+      if (frames.isEmpty())
+      {
+         throw new IllegalArgumentException("sprite sequence has no frames");
+      }
+      this.frames = frames.toArray(new PImage[0]);
+   }
+
+   public int size()
+   {
+      return this.frames.length;
+   }
+
+   /* frame for an unbounded frame counter, wrapped to the sequence */
+   public PImage frame(int imageIndex)
+   {
+      return this.frames[imageIndex % this.frames.length];
+   }
+
+   public List<PImage> frames()
+   {
+      return Arrays.asList(this.frames.clone());
+   }
+}
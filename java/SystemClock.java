@@ -0,0 +1,8 @@
+final class SystemClock
+   implements Clock
+{
+   public long currentTimeMillis()
+   {
+      return System.currentTimeMillis();
+   }
+}
@@ -0,0 +1,386 @@
+import java.util.Arrays;
+
+/*
+   Hierarchical timing wheel: LEVELS wheels of SLOTS buckets each, where a
+   bucket on level n spans SLOTS^n ticks. Scheduling and cancellation are
+   O(1) (events are linked directly into their bucket); buckets on the
+   upper levels are cascaded down as the current tick reaches them. Events
+   further out than the top wheel wait on an overflow list. Until the
+   first drain, events are only staged, so the wheel starts at the
+   earliest of them rather than at whichever was scheduled first.
+
+   Each bucket is kept in sequence order, including events cascaded down
+   behind ones scheduled straight into it, so events sharing a bucket
+   run in scheduling order. With a tick longer than one millisecond that
+   means scheduling order rather than strict time order, and pollBefore
+   is only tick-exact: it may return an event from the tick holding
+   time - 1 whose own time is time or later. Only a one-millisecond tick
+   honours the EventQueue contract exactly.
+
+   Every bucket caches its earliest time and how many of its events
+   share it, so nextTime looks at one bucket per wheel without walking
+   any of them; a bucket is only rescanned after the last event at its
+   earliest time leaves while others remain.
+*/
+final class TimingWheel
+   implements EventQueue
+{
+   private static final int SLOT_BITS = 6;
+   private static final int SLOTS = 1 << SLOT_BITS;
+   private static final int SLOT_MASK = SLOTS - 1;
+   private static final int LEVELS = 4;
+   private static final int OVERFLOW = LEVELS;
+   private static final int STAGED = LEVELS + 1;
+   private static final long UNKNOWN = Long.MIN_VALUE;
+
+   private final long tickMillis;
+   private final Event[][] heads;
+   private final Event[][] tails;
+   private final int[] counts;
+   private final long[][] minTimes;
+   private final int[][] minCounts;
+   private long currentTick;
+   private boolean started;
+   private int size;
+
+   public TimingWheel(long tickMillis)
+   {
+      if (tickMillis <= 0)
+      {
+         throw new IllegalArgumentException("tick must be positive");
+      }
+
+      this.tickMillis = tickMillis;
+      this.heads = new Event[STAGED + 1][SLOTS];
+      this.tails = new Event[STAGED + 1][SLOTS];
+      this.counts = new int[STAGED + 1];
+      this.minTimes = new long[STAGED + 1][SLOTS];
+      this.minCounts = new int[STAGED + 1][SLOTS];
+      for (long[] level : this.minTimes)
+      {
+         Arrays.fill(level, Long.MAX_VALUE);
+      }
+      this.currentTick = 0;
+      this.started = false;
+      this.size = 0;
+   }
+
+   public int size()
+   {
+      return this.size;
+   }
+
+   public boolean isEmpty()
+   {
+      return this.size == 0;
+   }
+
+   public void add(Event event)
+   {
+      if (event.wheelLevel >= 0)
+      {
+         throw new IllegalArgumentException("event already queued");
+      }
+
+      if (!this.started)
+      {
+         this.link(event, STAGED, 0);
+         this.size++;
+         return;
+      }
+
+      long tick = Math.floorDiv(event.time(), this.tickMillis);
+
+      // anything already overdue goes in the bucket being drained
+      tick = Math.max(tick, this.currentTick);
+      long delta = tick - this.currentTick;
+
+      int level = 0;
+      while (level < LEVELS && delta >= 1L << (SLOT_BITS * (level + 1)))
+      {
+         level++;
+      }
+
+      int slot = level == OVERFLOW ? 0 :
+              (int)((tick >> (SLOT_BITS * level)) & SLOT_MASK);
+      this.link(event, level, slot);
+      this.size++;
+   }
+
+   public boolean remove(Event event)
+   {
+      if (event.wheelLevel < 0)
+      {
+         return false;
+      }
+
+      this.unlink(event);
+      this.size--;
+      return true;
+   }
+
+   /* see the class comment for how exact this is with a coarse tick */
+   public Event pollBefore(long time)
+   {
+      if (!this.started)
+      {
+         this.start(Math.floorDiv(time - 1, this.tickMillis));
+      }
+
+      long lastTick = Math.floorDiv(time - 1, this.tickMillis);
+
+      while (this.currentTick <= lastTick)
+      {
+         Event head = this.heads[0][(int)(this.currentTick & SLOT_MASK)];
+         if (head != null)
+         {
+            this.unlink(head);
+            this.size--;
+            return head;
+         }
+
+         if (this.currentTick == lastTick)
+         {
+            return null;
+         }
+
+         // skip straight to the next boundary where a non-empty wheel
+         // could cascade, instead of stepping one tick at a time
+         int level = 0;
+         while (level <= OVERFLOW && this.counts[level] == 0)
+         {
+            level++;
+         }
+         if (level > OVERFLOW)
+         {
+            this.currentTick = lastTick;
+            return null;
+         }
+
+         int shift = SLOT_BITS * Math.min(level, LEVELS);
+         long next = ((this.currentTick >> shift) + 1) << shift;
+         if (next > lastTick)
+         {
+            this.currentTick = lastTick;
+            return null;
+         }
+
+         this.currentTick = next;
+         this.cascade();
+      }
+
+      return null;
+   }
+
+   public long nextTime()
+   {
+      if (this.size == 0)
+      {
+         return Long.MAX_VALUE;
+      }
+
+      long best = Long.MAX_VALUE;
+
+      // within each wheel, buckets in rotation order after the current
+      // one are in time order, so only the first non-empty one matters
+      for (int level = 0; level < LEVELS; level++)
+      {
+         if (this.counts[level] == 0)
+         {
+            continue;
+         }
+
+         int start = (int)((this.currentTick >> (SLOT_BITS * level)) &
+                 SLOT_MASK);
+         if (level > 0)
+         {
+            start++;
+         }
+
+         for (int i = 0; i < SLOTS; i++)
+         {
+            Event head = this.heads[level][(start + i) & SLOT_MASK];
+            if (head != null)
+            {
+               best = Math.min(best, this.earliest(level,
+                       (start + i) & SLOT_MASK));
+               break;
+            }
+         }
+      }
+
+      for (int level = OVERFLOW; level <= STAGED; level++)
+      {
+         if (this.counts[level] > 0)
+         {
+            best = Math.min(best, this.earliest(level, 0));
+         }
+      }
+
+      return best;
+   }
+
+   private void start(long lastTick)
+   {
+      long first = lastTick;
+      for (Event event = this.heads[STAGED][0]; event != null;
+           event = event.wheelNext)
+      {
+         first = Math.min(first,
+                 Math.floorDiv(event.time(), this.tickMillis));
+      }
+
+      this.currentTick = first;
+      this.started = true;
+      this.redistribute(STAGED, 0);
+   }
+
+   private long earliest(int level, int slot)
+   {
+      if (this.minTimes[level][slot] == UNKNOWN)
+      {
+         long best = Long.MAX_VALUE;
+         int count = 0;
+         for (Event event = this.heads[level][slot]; event != null;
+              event = event.wheelNext)
+         {
+            if (event.time() < best)
+            {
+               best = event.time();
+               count = 0;
+            }
+            if (event.time() == best)
+            {
+               count++;
+            }
+         }
+         this.minTimes[level][slot] = best;
+         this.minCounts[level][slot] = count;
+      }
+      return this.minTimes[level][slot];
+   }
+
+   private void cascade()
+   {
+      for (int level = OVERFLOW; level > 0; level--)
+      {
+         long span = 1L << (SLOT_BITS * level);
+         if ((this.currentTick & (span - 1)) == 0)
+         {
+            int slot = level == OVERFLOW ? 0 : (int)((this.currentTick >>
+                    (SLOT_BITS * level)) & SLOT_MASK);
+            this.redistribute(level, slot);
+         }
+      }
+   }
+
+   private void redistribute(int level, int slot)
+   {
+      Event event = this.heads[level][slot];
+      this.heads[level][slot] = null;
+      this.tails[level][slot] = null;
+      this.minTimes[level][slot] = Long.MAX_VALUE;
+      this.minCounts[level][slot] = 0;
+
+      while (event != null)
+      {
+         Event next = event.wheelNext;
+         event.wheelLevel = -1;
+         event.wheelPrev = null;
+         event.wheelNext = null;
+         this.counts[level]--;
+         this.size--;
+         this.add(event);
+         event = next;
+      }
+   }
+
+   /*
+      New events carry the highest sequence so far and go straight to the
+      tail; only cascaded ones walk back past later-scheduled events.
+   */
+   private void link(Event event, int level, int slot)
+   {
+      Event prev = this.tails[level][slot];
+      while (prev != null && prev.sequence() > event.sequence())
+      {
+         prev = prev.wheelPrev;
+      }
+
+      Event next = prev == null ? this.heads[level][slot] : prev.wheelNext;
+      event.wheelLevel = level;
+      event.wheelSlot = slot;
+      event.wheelPrev = prev;
+      event.wheelNext = next;
+
+      if (prev == null)
+      {
+         this.heads[level][slot] = event;
+      }
+      else
+      {
+         prev.wheelNext = event;
+      }
+
+      if (next == null)
+      {
+         this.tails[level][slot] = event;
+      }
+      else
+      {
+         next.wheelPrev = event;
+      }
+      this.counts[level]++;
+
+      long min = this.minTimes[level][slot];
+      if (min != UNKNOWN && event.time() < min)
+      {
+         this.minTimes[level][slot] = event.time();
+         this.minCounts[level][slot] = 1;
+      }
+      else if (event.time() == min)
+      {
+         this.minCounts[level][slot]++;
+      }
+   }
+
+   private void unlink(Event event)
+   {
+      int level = event.wheelLevel;
+      int slot = event.wheelSlot;
+
+      if (event.wheelPrev == null)
+      {
+         this.heads[level][slot] = event.wheelNext;
+      }
+      else
+      {
+         event.wheelPrev.wheelNext = event.wheelNext;
+      }
+
+      if (event.wheelNext == null)
+      {
+         this.tails[level][slot] = event.wheelPrev;
+      }
+      else
+      {
+         event.wheelNext.wheelPrev = event.wheelPrev;
+      }
+
+      event.wheelLevel = -1;
+      event.wheelPrev = null;
+      event.wheelNext = null;
+      this.counts[level]--;
+
+      if (this.heads[level][slot] == null)
+      {
+         this.minTimes[level][slot] = Long.MAX_VALUE;
+         this.minCounts[level][slot] = 0;
+      }
+      else if (event.time() == this.minTimes[level][slot] &&
+              --this.minCounts[level][slot] == 0)
+      {
+         this.minTimes[level][slot] = UNKNOWN;
+      }
+   }
+}
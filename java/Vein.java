@@ -1,14 +1,29 @@
-import java.util.List;
-import java.util.Optional;
-import processing.core.PImage;
+final class Vein extends ActiveEntity {
+   public Vein(String id, Point position, int actionPeriod, String imageKey) {
+      super(EntityKind.VEIN, id, position, imageKey, actionPeriod);
+   }
 
-public class Vein {
-    private String id;
-    private Point position;
-    private List<PImage> images;
-    private int imageIndex;
-    private int resourceLimit;
-    private int resourceCount;
-    private int actionPeriod;
-    private int animationPeriod;
+   /* seeds ore into the first free cell around the vein */
+   @Override
+   public void executeActivity(WorldModel world, EventScheduler scheduler)
+   {
+      long openPt = world.findOpenAround(this.position().x(),
+              this.position().y());
+
+      if (openPt != Point.NO_POSITION)
+      {
+         Ore ore = new Ore(Functions.ORE_ID_PREFIX + this.id(),
+                 world.pointAt(Point.unpackX(openPt), Point.unpackY(openPt)),
+                 Functions.ORE_CORRUPT_MIN +
+                         scheduler.randomAt(this.position()).nextInt(
+                                 Functions.ORE_CORRUPT_MAX - Functions.ORE_CORRUPT_MIN),
+                 Functions.ORE_KEY);
+         world.addEntity(ore);
+         scheduler.scheduleActions(ore, world);
+      }
+
+      scheduler.scheduleEvent(this,
+              new Activity(this, world),
+              this.actionPeriod());
+   }
 }
@@ -35,8 +35,33 @@ final class Viewport
 
    public boolean contains(Point p)
    {
-      return p.y() >= this.row && p.y() < this.row + this.numRows &&
-              p.x() >= this.col && p.x() < this.col + this.numCols;
+      return this.contains(p.x(), p.y());
+   }
+
+   public boolean contains(int x, int y)
+   {
+      return y >= this.row && y < this.row + this.numRows &&
+              x >= this.col && x < this.col + this.numCols;
+   }
+
+   public int worldX(int col)
+   {
+      return col + this.col;
+   }
+
+   public int worldY(int row)
+   {
+      return row + this.row;
+   }
+
+   public int viewX(int x)
+   {
+      return x - this.col;
+   }
+
+   public int viewY(int y)
+   {
+      return y - this.row;
    }
 
    public Point viewportToWorld(int col, int row)
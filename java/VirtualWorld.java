@@ -33,12 +33,29 @@ public final class VirtualWorld
    private static final double FASTER_SCALE = 0.25;
    private static final double FASTEST_SCALE = 0.10;
 
+   private static final String WHEEL_FLAG = "-wheel";
+   private static final long WHEEL_TICK_MILLIS = 1;
+
+   private static final String TIME_ANIMATION_FLAG = "-timeanim";
+   private static final String ATLAS_FLAG = "-atlas";
+   private static final String SIM_HZ_FLAG = "-simhz";
+   private static final String FPS_FLAG = "-fps";
+   private static final int DEFAULT_FPS = 60;
+
    private static double timeScale = 1.0;
+   private static boolean useTimingWheel = false;
+   private static boolean useDerivedAnimation = false;
+   private static boolean useAtlas = false;
+   private static int simHz = 0;
+   private static int fps = DEFAULT_FPS;
+
+   private static final Clock clock = new SystemClock();
 
    private ImageStore imageStore;
    private WorldModel world;
    private WorldView view;
    private EventScheduler scheduler;
+   private SimulationThread simulation;
 
    private long next_time;
 
@@ -55,29 +72,60 @@ public final class VirtualWorld
       this.imageStore = new ImageStore(
          createImageColored(TILE_WIDTH, TILE_HEIGHT, DEFAULT_IMAGE_COLOR));
       this.world = new WorldModel(WORLD_ROWS, WORLD_COLS,
-         createDefaultBackground(imageStore));
+         createDefaultBackground());
       this.view = new WorldView(VIEW_ROWS, VIEW_COLS, this, world,
-         TILE_WIDTH, TILE_HEIGHT);
-      this.scheduler = new EventScheduler(timeScale);
+         imageStore, TILE_WIDTH, TILE_HEIGHT);
+      this.scheduler = new EventScheduler(timeScale, createEventQueue(),
+         clock);
+      this.scheduler.watch(world);
+      this.scheduler.setDerivedAnimation(useDerivedAnimation);
 
       loadImages(IMAGE_LIST_FILE_NAME, imageStore, this);
-      loadWorld(world, LOAD_FILE_NAME, imageStore);
+      if (useAtlas)
+      {
+         this.view.useAtlas(imageStore.buildAtlas(this));
+      }
+      loadWorld(world, LOAD_FILE_NAME);
+
+      scheduleActions(world, scheduler);
 
-      scheduleActions(world, scheduler, imageStore);
+      frameRate(fps);
+      if (simHz > 0)
+      {
+         this.simulation = new SimulationThread(world, scheduler, clock,
+            simHz, VIEW_COLS, VIEW_ROWS);
+         this.simulation.start();
+      }
 
-      next_time = System.currentTimeMillis() + TIMER_ACTION_PERIOD;
+      next_time = clock.currentTimeMillis() + TIMER_ACTION_PERIOD;
    }
 
    public void draw()
    {
-      long time = System.currentTimeMillis();
+      long time = clock.currentTimeMillis();
+      if (this.simulation != null)
+      {
+         view.drawSnapshot(this.simulation.latest(), time);
+         return;
+      }
+
       if (time >= next_time)
       {
          this.scheduler.updateOnTime(time);
          next_time = time + TIMER_ACTION_PERIOD;
       }
 
-      view.drawViewport();
+      view.drawViewport(time);
+   }
+
+   /* Processing calls this on the way out, whichever way the sketch ends */
+   public void dispose()
+   {
+      if (this.simulation != null)
+      {
+         this.simulation.stop();
+      }
+      super.dispose();
    }
 
    public void keyPressed()
@@ -103,13 +151,16 @@ public final class VirtualWorld
                break;
          }
          view.shiftView(dx, dy);
+         if (this.simulation != null)
+         {
+            this.simulation.setViewOrigin(view.viewCol(), view.viewRow());
+         }
       }
    }
 
-   private static Background createDefaultBackground(ImageStore imageStore)
+   private static Background createDefaultBackground()
    {
-      return new Background(DEFAULT_IMAGE_NAME,
-         imageStore.getImageList(DEFAULT_IMAGE_NAME));
+      return new Background(DEFAULT_IMAGE_NAME);
    }
 
    private static PImage createImageColored(int width, int height, int color)
@@ -130,7 +181,7 @@ public final class VirtualWorld
       try
       {
          Scanner in = new Scanner(new File(filename));
-         Functions.loadImages(in,imageStore,screen);
+         imageStore.loadImages(in, screen);
       }
       catch (FileNotFoundException e)
       {
@@ -138,13 +189,12 @@ public final class VirtualWorld
       }
    }
 
-   private static void loadWorld(WorldModel world, String filename,
-      ImageStore imageStore)
+   private static void loadWorld(WorldModel world, String filename)
    {
       try
       {
          Scanner in = new Scanner(new File(filename));
-         Functions.load(in, world, imageStore);
+         Functions.load(in, world);
       }
       catch (FileNotFoundException e)
       {
@@ -153,19 +203,29 @@ public final class VirtualWorld
    }
 
    private static void scheduleActions(WorldModel world,
-      EventScheduler scheduler, ImageStore imageStore)
+      EventScheduler scheduler)
    {
       for (Entity entity : world.entities())
       {
-         scheduler.scheduleActions(entity, world, imageStore);
+         scheduler.scheduleActions(entity, world);
+      }
+   }
+
+   private static EventQueue createEventQueue()
+   {
+      if (useTimingWheel)
+      {
+         return new TimingWheel(WHEEL_TICK_MILLIS);
       }
+
+      return new EventHeap(new EventComparator());
    }
 
    private static void parseCommandLine(String [] args)
    {
-      for (String arg : args)
+      for (int i = 0; i < args.length; i++)
       {
-         switch (arg)
+         switch (args[i])
          {
             case FAST_FLAG:
                timeScale = Math.min(FAST_SCALE, timeScale);
@@ -176,6 +236,21 @@ public final class VirtualWorld
             case FASTEST_FLAG:
                timeScale = Math.min(FASTEST_SCALE, timeScale);
                break;
+            case WHEEL_FLAG:
+               useTimingWheel = true;
+               break;
+            case TIME_ANIMATION_FLAG:
+               useDerivedAnimation = true;
+               break;
+            case ATLAS_FLAG:
+               useAtlas = true;
+               break;
+            case SIM_HZ_FLAG:
+               simHz = Integer.parseInt(args[++i]);
+               break;
+            case FPS_FLAG:
+               fps = Integer.parseInt(args[++i]);
+               break;
          }
       }
    }
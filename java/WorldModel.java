@@ -1,23 +1,106 @@
-import processing.core.PImage;
-
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 final class WorldModel {
+   /*
+      Beyond this many cells the dense per-cell planners (distance fields,
+      A*, HPA*) are not built and movers fall back to greedy stepping.
+   */
+   private static final long MAX_PLANNED_CELLS = 1L << 26;
+
+   // where removed entities are left, just outside the grid
+   private static final Point OFF_GRID = new Point(-1, -1);
+
    private int numRows;
    private int numCols;
-   private Background background[][];
-   private Entity occupancy[][];
-   private Set<Entity> entities;
+   private BackgroundLayer background;
+   private ChunkedGrid<Entity> occupancy;
+   private ChunkedGrid<Point> positions;
+   private EntityRegistry entities;
+   private SpatialIndex index;
+   private Map<EntityKind, DistanceField> distanceFields;
+   private PathFinder pathFinder;
+   private HierarchicalPathFinder hierarchicalPathFinder;
+   private OreDispatcher oreDispatcher;
+   private List<BackgroundListener> backgroundListeners;
+   private List<AvailabilityListener> availabilityListeners;
+   private DirtyCells dirtyCells;
+
+   // shared so movers do not build a capturing lambda on every step
+   private final PathFinder.Passability emptyCells =
+           (x, y) -> this.occupantAt(x, y) == null;
+   private final PathFinder.Passability emptyOrOreCells = (x, y) ->
+   {
+      Entity occupant = this.occupantAt(x, y);
+      return occupant == null || occupant.kind() == EntityKind.ORE;
+   };
 
    public WorldModel(int numRows, int numCols, Background defaultBackground) {
       this.numRows = numRows;
       this.numCols = numCols;
-      this.background = new Background[numRows][numCols];
-      this.occupancy = new Entity[numRows][numCols];
-      this.entities = new HashSet<>();
+      this.background = new BackgroundLayer(defaultBackground);
+      this.occupancy = new ChunkedGrid<>(null);
+      this.positions = new ChunkedGrid<>(null);
+      this.entities = new EntityRegistry();
+      this.index = new SpatialIndex(numRows, numCols);
+      this.distanceFields = new EnumMap<>(EntityKind.class);
+      this.backgroundListeners = new ArrayList<>();
+      this.availabilityListeners = new ArrayList<>();
+   }
+
+   /* told about every in-bounds cell whose background is set */
+   interface BackgroundListener
+   {
+      void backgroundChanged(int x, int y);
+   }
+
+   public void addBackgroundListener(BackgroundListener listener)
+   {
+      this.backgroundListeners.add(listener);
+   }
+
+   /*
+      Told whenever an entity of a kind may have become available to
+      something waiting for one: it was added, changed into that kind,
+      or, for ore, had its dispatcher claim dropped.
+   */
+   interface AvailabilityListener
+   {
+      void becameAvailable(EntityKind kind);
+   }
 
-      for (int row = 0; row < numRows; row++) {
-         Arrays.fill(this.background[row], defaultBackground);
+   public void addAvailabilityListener(AvailabilityListener listener)
+   {
+      this.availabilityListeners.add(listener);
+   }
+
+   public void notifyAvailable(EntityKind kind)
+   {
+      for (AvailabilityListener listener : this.availabilityListeners)
+      {
+         listener.becameAvailable(kind);
+      }
+   }
+
+   /*
+      Starts recording the cells whose drawing changes, for a renderer
+      that repaints only those; headless runs never pay for it.
+   */
+   public DirtyCells trackDirtyCells()
+   {
+      if (this.dirtyCells == null)
+      {
+         this.dirtyCells = new DirtyCells();
+      }
+      return this.dirtyCells;
+   }
+
+   public void markDirty(Point pos)
+   {
+      if (this.dirtyCells != null)
+      {
+         this.dirtyCells.mark(pos.x(), pos.y());
       }
    }
 
@@ -29,7 +112,7 @@ final class WorldModel {
       return this.numCols;
    }
 
-   public Set<Entity> entities(){
+   public EntityRegistry entities(){
       return this.entities;
    }
 
@@ -44,13 +127,19 @@ final class WorldModel {
    }
 
    private boolean withinBounds(Point pos) {
-      return pos.y() >= 0 && pos.y() < this.numRows &&
-              pos.x() >= 0 && pos.x() < this.numCols;
+      return this.withinBounds(pos.x(), pos.y());
+   }
+
+   public boolean withinBounds(int x, int y) {
+      return y >= 0 && y < this.numRows && x >= 0 && x < this.numCols;
    }
 
    public boolean isOccupied(Point pos) {
-      return withinBounds(pos) &&
-              this.getOccupancyCell(pos) != null;
+      return this.isOccupied(pos.x(), pos.y());
+   }
+
+   public boolean isOccupied(int x, int y) {
+      return this.occupantAt(x, y) != null;
    }
    public void addEntity(Entity entity)
    {
@@ -58,6 +147,10 @@ final class WorldModel {
       {
          this.setOccupancyCell(entity.position(), entity);
          this.entities.add(entity);
+         this.index.add(entity);
+         this.notifyAdded(entity, entity.position());
+         this.markDirty(entity.position());
+         this.notifyAvailable(entity.kind());
       }
    }
 
@@ -66,11 +159,89 @@ final class WorldModel {
       Point oldPos = entity.position();
       if (this.withinBounds(pos) && !pos.equals(oldPos))
       {
-         this.setOccupancyCell(oldPos, null);
          this.removeEntityAt(pos);
-         this.setOccupancyCell(pos, entity);
+         if (this.getOccupancyCell(oldPos) == entity)
+         {
+            this.occupancy.move(oldPos.x(), oldPos.y(), pos.x(), pos.y());
+         }
+         else
+         {
+            this.setOccupancyCell(pos, entity);
+         }
+         this.notifyRemoved(entity, oldPos);
          entity.setPosition(pos);
+         this.index.move(entity, oldPos, pos);
+         this.notifyAdded(entity, pos);
+         this.markDirty(oldPos);
+         this.markDirty(pos);
+      }
+   }
+
+   /* a and b trade cells; neither is evicted */
+   public void swapEntities(Entity a, Entity b)
+   {
+      Point posA = a.position();
+      Point posB = b.position();
+      this.setOccupancyCell(posA, b);
+      this.setOccupancyCell(posB, a);
+      this.notifyRemoved(a, posA);
+      this.notifyRemoved(b, posB);
+      a.setPosition(posB);
+      b.setPosition(posA);
+      this.index.move(a, posA, posB);
+      this.index.move(b, posB, posA);
+      this.notifyAdded(a, posB);
+      this.notifyAdded(b, posA);
+      this.markDirty(posA);
+      this.markDirty(posB);
+   }
+
+   /* as above, reusing the cell's shared Point, so a move allocates nothing */
+   public void moveEntity(Entity entity, int x, int y)
+   {
+      Point oldPos = entity.position();
+      if (this.withinBounds(x, y) && (oldPos.x() != x || oldPos.y() != y))
+      {
+         this.moveEntity(entity, this.pointAt(x, y));
+      }
+   }
+
+   /*
+      The one Point handed out for an in-bounds cell. Points are
+      immutable, so every entity that stands on the cell can share it;
+      one is created the first time a cell is asked for and kept.
+   */
+   public Point pointAt(int x, int y)
+   {
+      Point point = this.positions.get(x, y);
+      if (point == null)
+      {
+         point = new Point(x, y);
+         this.positions.set(x, y, point);
+      }
+      return point;
+   }
+
+   /*
+      Changes the kind of an entity in place, re-indexing it without
+      touching its position or registry handle.
+   */
+   public void changeKind(Entity entity, EntityKind kind)
+   {
+      if (!this.entities.contains(entity))
+      {
+         entity.setKind(kind);
+         return;
       }
+
+      this.entityLeaving(entity);
+      this.index.remove(entity);
+      this.notifyRemoved(entity, entity.position());
+      entity.setKind(kind);
+      this.index.add(entity);
+      this.notifyAdded(entity, entity.position());
+      this.markDirty(entity.position());
+      this.notifyAvailable(kind);
    }
 
    public void removeEntity(Entity entity)
@@ -84,222 +255,358 @@ final class WorldModel {
               && this.getOccupancyCell(pos) != null)
       {
          Entity entity = this.getOccupancyCell(pos);
+         this.entityLeaving(entity);
+         this.index.remove(entity);
 
          // this moves the entity just outside of the grid for
          // debugging purposes
-         entity.setPosition(new Point(-1, -1));
+         entity.setPosition(OFF_GRID);
          this.entities.remove(entity);
          this.setOccupancyCell(pos, null);
+         this.notifyRemoved(entity, pos);
+         this.markDirty(pos);
       }
    }
 
-   public Optional<Entity> getOccupant(Point pos)
+   public Optional<Entity> findNearest(Point pos, EntityKind kind)
    {
-      if (this.isOccupied(pos))
+      return this.index.findNearest(pos, kind);
+   }
+
+   /* nearest entity of kind to (x, y), or null when there is none */
+   public Entity findNearest(int x, int y, EntityKind kind)
+   {
+      return this.index.findNearest(x, y, kind);
+   }
+
+   public Entity findNearest(int x, int y, EntityKind kind,
+                             Predicate<Entity> accept)
+   {
+      return this.index.findNearest(x, y, kind, accept);
+   }
+
+   /* number of entities of kind in the world */
+   public int count(EntityKind kind)
+   {
+      return this.index.count(kind);
+   }
+
+   public OreDispatcher oreDispatcher()
+   {
+      if (this.oreDispatcher == null)
       {
-         return Optional.of(this.getOccupancyCell(pos));
+         this.oreDispatcher = new OreDispatcher(this);
       }
-      else
+      return this.oreDispatcher;
+   }
+
+   /* entity is about to be removed or to change kind */
+   private void entityLeaving(Entity entity)
+   {
+      if (this.oreDispatcher != null)
       {
-         return Optional.empty();
+         this.oreDispatcher.entityLeft(entity);
       }
    }
 
-   private  Entity getOccupancyCell(Point pos)
+   /*
+      Shared distance field toward the given kind, created on first use
+      and kept up to date as entities are added and removed. Null when
+      the world is too large for dense planning.
+   */
+   public DistanceField distanceField(EntityKind target)
    {
-      return this.occupancy[pos.y()][pos.x()];
+      if (!this.isPlannable())
+      {
+         return null;
+      }
+      return this.distanceFields.computeIfAbsent(target,
+              kind -> new DistanceField(this, kind));
    }
 
-   private void setOccupancyCell(Point pos, Entity entity)
+   /*
+      The field toward target if it exists and needs no repair, else
+      null. Unlike distanceField it never writes anything, so region
+      tasks may share it.
+   */
+   public DistanceField currentDistanceField(EntityKind target)
    {
-      this.occupancy[pos.y()][pos.x()] = entity;
+      DistanceField field = this.distanceFields.get(target);
+      return field != null && field.isCurrent() ? field : null;
    }
 
-   private Background getBackgroundCell(Point pos)
+   /* cells with no occupant */
+   public PathFinder.Passability emptyCells()
    {
-      return this.background[pos.y()][pos.x()];
+      return this.emptyCells;
    }
 
-   private void setBackgroundCell(Point pos, Background background)
+   /* cells with no occupant or with ore, which ore blobs consume */
+   public PathFinder.Passability emptyOrOreCells()
    {
-      this.background[pos.y()][pos.x()] = background;
+      return this.emptyOrOreCells;
    }
 
-   public Optional<Point> findOpenAround(Point pos)
+   public PathFinder pathFinder()
    {
-      for (int dy = -Functions.ORE_REACH; dy <= Functions.ORE_REACH; dy++)
+      if (this.pathFinder == null)
       {
-         for (int dx = -Functions.ORE_REACH; dx <= Functions.ORE_REACH; dx++)
-         {
-            Point newPt = new Point(pos.x() + dx, pos.y() + dy);
-            if (this.withinBounds(newPt) &&
-                    !this.isOccupied(newPt))
-            {
-               return Optional.of(newPt);
-            }
-         }
+         this.pathFinder = new PathFinder(this.numRows, this.numCols);
       }
-
-      return Optional.empty();
+      return this.pathFinder;
    }
-/*
-   public void load(Scanner in,ImageStore imageStore)
+
+   /*
+      Path from start to a cell next to target. Long routes are planned
+      over the cluster graph first; short ones, or long ones the cluster
+      graph cannot refine, are searched cell by cell.
+   */
+   public Path findPath(Point start, Entity target,
+                        PathFinder.Passability passability)
    {
-      int lineNumber = 0;
-      while (in.hasNextLine())
+      if (!this.isPlannable())
       {
-         try
+         return null;
+      }
+
+      Point goal = target.position();
+      int distance = Math.abs(goal.x() - start.x()) +
+              Math.abs(goal.y() - start.y());
+
+      if (distance >= HierarchicalPathFinder.MIN_DISTANCE)
+      {
+         if (this.hierarchicalPathFinder == null)
          {
-            if (!processLine(in.nextLine(), imageStore))
-            {
-               System.err.println(String.format("invalid entry on line %d",
-                       lineNumber));
-            }
+            this.hierarchicalPathFinder = new HierarchicalPathFinder(this);
          }
-         catch (NumberFormatException e)
+
+         Path path = this.hierarchicalPathFinder.findPath(start, target,
+                 this.pathFinder(), passability);
+         if (path != null)
          {
-            System.err.println(String.format("invalid entry on line %d",
-                    lineNumber));
+            return path;
          }
-         catch (IllegalArgumentException e)
+      }
+
+      return this.pathFinder().findPath(start, target, passability);
+   }
+
+   /*
+      Blocked cells that walled in the search when findPath last returned
+      null, or null when nothing so specific is known; see
+      PathFinder.failureBoundary.
+   */
+   public long[] failedPathBoundary()
+   {
+      return this.isPlannable() ? this.pathFinder().failureBoundary() : null;
+   }
+
+   private boolean isPlannable()
+   {
+      return (long)this.numRows * this.numCols <= MAX_PLANNED_CELLS;
+   }
+
+   private void notifyAdded(Entity entity, Point pos)
+   {
+      if (this.hierarchicalPathFinder != null &&
+              DistanceField.isStatic(entity.kind()))
+      {
+         this.hierarchicalPathFinder.cellChanged(pos);
+      }
+
+      if (this.isFieldRelevant(entity.kind()))
+      {
+         for (DistanceField field : this.distanceFields.values())
          {
-            System.err.println(String.format("issue on line %d: %s",
-                    lineNumber, e.getMessage()));
+            field.entityAdded(entity, pos);
          }
-         lineNumber++;
       }
    }
 
-   public boolean processLine(String line, ImageStore imageStore)
+   private void notifyRemoved(Entity entity, Point pos)
    {
-      String[] properties = line.split("\\s");
-      if (properties.length > 0)
+      if (this.hierarchicalPathFinder != null &&
+              DistanceField.isStatic(entity.kind()))
+      {
+         this.hierarchicalPathFinder.cellChanged(pos);
+      }
+
+      if (this.isFieldRelevant(entity.kind()))
       {
-         switch (properties[Functions.PROPERTY_KEY])
+         for (DistanceField field : this.distanceFields.values())
          {
-            case Functions.BGND_KEY:
-               return this.parseBackground(properties, imageStore);
-            case Functions.MINER_KEY:
-               return this.parseMiner(properties, imageStore);
-            case Functions.OBSTACLE_KEY:
-               return this.parseObstacle(properties, imageStore);
-            case Functions.ORE_KEY:
-               return this.parseOre(properties, imageStore);
-            case Functions.SMITH_KEY:
-               return this.parseSmith(properties, imageStore);
-            case Functions.VEIN_KEY:
-               return this.parseVein(properties, imageStore);
+            field.entityRemoved(entity, pos);
          }
       }
+   }
 
-      return false;
+   private boolean isFieldRelevant(EntityKind kind)
+   {
+      return DistanceField.isStatic(kind) ||
+              this.distanceFields.containsKey(kind);
    }
-*/
-   public void setBackground(Point pos, Background background)
+
+   public Optional<Entity> findAdjacent(Point pos, EntityKind kind)
    {
-      if (this.withinBounds(pos))
+      return Optional.ofNullable(this.findAdjacent(pos.x(), pos.y(), kind));
+   }
+
+   /* entity of kind in a cell next to (x, y), or null */
+   public Entity findAdjacent(int x, int y, EntityKind kind)
+   {
+      Entity found = this.occupantOfKind(x - 1, y, kind);
+      if (found == null)
       {
-         this.setBackgroundCell(pos, background);
+         found = this.occupantOfKind(x + 1, y, kind);
+      }
+      if (found == null)
+      {
+         found = this.occupantOfKind(x, y - 1, kind);
       }
+      if (found == null)
+      {
+         found = this.occupantOfKind(x, y + 1, kind);
+      }
+      return found;
+   }
+
+   private Entity occupantOfKind(int x, int y, EntityKind kind)
+   {
+      Entity occupant = this.occupantAt(x, y);
+      return occupant != null && occupant.kind() == kind ? occupant : null;
    }
-/*
-   public boolean parseBackground(String [] properties, ImageStore imageStore)
+
+   /*
+      Calls action for each entity in the cols x rows rectangle whose
+      top-left cell is (left, top), row by row. The cost depends on the
+      area scanned, not on how many entities the world holds.
+   */
+   public void forEachEntityIn(int left, int top, int cols, int rows,
+      Consumer<? super Entity> action)
    {
-      if (properties.length == Functions.BGND_NUM_PROPERTIES)
+      int x0 = Math.max(left, 0);
+      int y0 = Math.max(top, 0);
+      int x1 = Math.min(left + cols, this.numCols);
+      int y1 = Math.min(top + rows, this.numRows);
+
+      for (int y = y0; y < y1; y++)
       {
-         Point pt = new Point(Integer.parseInt(properties[Functions.BGND_COL]),
-                 Integer.parseInt(properties[Functions.BGND_ROW]));
-         String id = properties[Functions.BGND_ID];
-         this.setBackground(pt,
-                 new Background(id, imageStore.getImageList(id)));
+         for (int x = x0; x < x1; x++)
+         {
+            Entity occupant = this.occupancy.get(x, y);
+            if (occupant != null)
+            {
+               action.accept(occupant);
+            }
+         }
       }
+   }
 
-      return properties.length == Functions.BGND_NUM_PROPERTIES;
+   /* occupant of the cell, or null when it is empty or out of bounds */
+   Entity occupantAt(int x, int y)
+   {
+      return this.withinBounds(x, y) ? this.occupancy.get(x, y) : null;
    }
 
-   public boolean parseMiner(String [] properties, ImageStore imageStore)
+   public Optional<Entity> getOccupant(Point pos)
    {
-      if (properties.length == Functions.MINER_NUM_PROPERTIES)
+      if (this.isOccupied(pos))
       {
-         Point pt = new Point(Integer.parseInt(properties[Functions.MINER_COL]),
-                 Integer.parseInt(properties[Functions.MINER_ROW]));
-         Entity entity = createMinerNotFull(properties[Functions.MINER_ID],
-                 Integer.parseInt(properties[Functions.MINER_LIMIT]),
-                 pt,
-                 Integer.parseInt(properties[Functions.MINER_ACTION_PERIOD]),
-                 Integer.parseInt(properties[Functions.MINER_ANIMATION_PERIOD]),
-                 imageStore.getImageList(Functions.MINER_KEY));
-         this.tryAddEntity(entity);
+         return Optional.of(this.getOccupancyCell(pos));
       }
+      else
+      {
+         return Optional.empty();
+      }
+   }
+
+   private  Entity getOccupancyCell(Point pos)
+   {
+      return this.occupancy.get(pos.x(), pos.y());
+   }
+
+   private void setOccupancyCell(Point pos, Entity entity)
+   {
+      this.occupancy.set(pos.x(), pos.y(), entity);
+   }
+
+   private Background getBackgroundCell(Point pos)
+   {
+      return this.background.get(pos.x(), pos.y());
+   }
 
-      return properties.length == Functions.MINER_NUM_PROPERTIES;
+   private void setBackgroundCell(Point pos, Background background)
+   {
+      this.background.set(pos.x(), pos.y(), background);
    }
 
-   public boolean parseObstacle(String [] properties, ImageStore imageStore)
+   public Optional<Point> findOpenAround(Point pos)
    {
-      if (properties.length == Functions.OBSTACLE_NUM_PROPERTIES)
+      long open = this.findOpenAround(pos.x(), pos.y());
+      if (open == Point.NO_POSITION)
       {
-         Point pt = new Point(
-                 Integer.parseInt(properties[Functions.OBSTACLE_COL]),
-                 Integer.parseInt(properties[Functions.OBSTACLE_ROW]));
-         Entity entity = createObstacle(properties[Functions.OBSTACLE_ID],
-                 pt, imageStore.getImageList(Functions.OBSTACLE_KEY));
-         this.tryAddEntity(entity);
+         return Optional.empty();
       }
-
-      return properties.length == Functions.OBSTACLE_NUM_PROPERTIES;
+      return Optional.of(new Point(Point.unpackX(open), Point.unpackY(open)));
    }
 
-   public boolean parseOre(String [] properties, ImageStore imageStore)
+   /* packed position of a free cell around (x, y), or Point.NO_POSITION */
+   public long findOpenAround(int x, int y)
    {
-      if (properties.length == Functions.ORE_NUM_PROPERTIES)
+      for (int dy = -Functions.ORE_REACH; dy <= Functions.ORE_REACH; dy++)
       {
-         Point pt = new Point(Integer.parseInt(properties[Functions.ORE_COL]),
-                 Integer.parseInt(properties[Functions.ORE_ROW]));
-         Entity entity = createOre(properties[Functions.ORE_ID],
-                 pt, Integer.parseInt(properties[Functions.ORE_ACTION_PERIOD]),
-                 imageStore.getImageList(Functions.ORE_KEY));
-         this.tryAddEntity(entity);
+         for (int dx = -Functions.ORE_REACH; dx <= Functions.ORE_REACH; dx++)
+         {
+            if (this.withinBounds(x + dx, y + dy) &&
+                    !this.isOccupied(x + dx, y + dy))
+            {
+               return Point.pack(x + dx, y + dy);
+            }
+         }
       }
 
-      return properties.length == Functions.ORE_NUM_PROPERTIES;
+      return Point.NO_POSITION;
    }
 
-   public boolean parseSmith(String [] properties, ImageStore imageStore)
+   public void setBackground(Point pos, Background background)
    {
-      if (properties.length == Functions.SMITH_NUM_PROPERTIES)
+      if (this.withinBounds(pos))
       {
-         Point pt = new Point(Integer.parseInt(properties[Functions.SMITH_COL]),
-                 Integer.parseInt(properties[Functions.SMITH_ROW]));
-         Entity entity = createBlacksmith(properties[Functions.SMITH_ID],
-                 pt, imageStore.getImageList(Functions.SMITH_KEY));
-         this.tryAddEntity(entity);
+         this.setBackgroundCell(pos, background);
+         this.notifyBackgroundChanged(pos);
       }
+   }
 
-      return properties.length == Functions.SMITH_NUM_PROPERTIES;
+   /* same as above, reusing the shared Background for id */
+   public void setBackground(Point pos, String id)
+   {
+      if (this.withinBounds(pos))
+      {
+         this.background.set(pos.x(), pos.y(), id);
+         this.notifyBackgroundChanged(pos);
+      }
    }
 
-   public boolean parseVein(String [] properties, ImageStore imageStore)
+   private void notifyBackgroundChanged(Point pos)
    {
-      if (properties.length == Functions.VEIN_NUM_PROPERTIES)
+      this.markDirty(pos);
+      for (BackgroundListener listener : this.backgroundListeners)
       {
-         Point pt = new Point(Integer.parseInt(properties[Functions.VEIN_COL]),
-                 Integer.parseInt(properties[Functions.VEIN_ROW]));
-         Entity entity = createVein(properties[Functions.VEIN_ID],
-                 pt,
-                 Integer.parseInt(properties[Functions.VEIN_ACTION_PERIOD]),
-                 imageStore.getImageList(Functions.VEIN_KEY));
-         this.tryAddEntity(entity);
+         listener.backgroundChanged(pos.x(), pos.y());
       }
+   }
 
-      return properties.length == Functions.VEIN_NUM_PROPERTIES;
+   /* background of the cell, or null when it is out of bounds */
+   public Background backgroundAt(int x, int y)
+   {
+      return this.withinBounds(x, y) ? this.background.get(x, y) : null;
    }
-*/
-   public  Optional<PImage> getBackgroundImage(Point pos)
+
+   public Optional<Background> getBackground(Point pos)
    {
       if (this.withinBounds(pos))
       {
-         return Optional.of(this.getBackgroundCell(pos).getCurrentImage());
+         return Optional.of(this.getBackgroundCell(pos));
       }
       else
       {
@@ -307,60 +614,55 @@ final class WorldModel {
       }
    }
 
-   public static Entity createBlacksmith(String id, Point position,
-                                         List<PImage> images)
+   public static Blacksmith createBlacksmith(String id, Point position,
+                                             String imageKey)
    {
-      return new Entity(EntityKind.BLACKSMITH, id, position, images,
-              0, 0, 0, 0);
+      return new Blacksmith(id, position, imageKey);
    }
 
-   public static Entity createMinerFull(String id, int resourceLimit,
-                                        Point position, int actionPeriod, int animationPeriod,
-                                        List<PImage> images)
+   public static Miner createMinerFull(String id, int resourceLimit,
+                                       Point position, int actionPeriod, int animationPeriod,
+                                       String imageKey)
    {
-      return new Entity(EntityKind.MINER_FULL, id, position, images,
+      return new Miner(MinerFull.INSTANCE, id, position, imageKey,
               resourceLimit, resourceLimit, actionPeriod, animationPeriod);
    }
 
-   public static Entity createMinerNotFull(String id, int resourceLimit,
-                                           Point position, int actionPeriod, int animationPeriod,
-                                           List<PImage> images)
+   public static Miner createMinerNotFull(String id, int resourceLimit,
+                                          Point position, int actionPeriod, int animationPeriod,
+                                          String imageKey)
    {
-      return new Entity(EntityKind.MINER_NOT_FULL, id, position, images,
+      return new Miner(MinerNotfull.INSTANCE, id, position, imageKey,
               resourceLimit, 0, actionPeriod, animationPeriod);
    }
 
-   public static Entity createObstacle(String id, Point position,
-                                       List<PImage> images)
+   public static Obstacle createObstacle(String id, Point position,
+                                         String imageKey)
    {
-      return new Entity(EntityKind.OBSTACLE, id, position, images,
-              0, 0, 0, 0);
+      return new Obstacle(id, position, imageKey);
    }
 
-   public static Entity createOre(String id, Point position, int actionPeriod,
-                                  List<PImage> images)
+   public static Ore createOre(String id, Point position, int actionPeriod,
+                               String imageKey)
    {
-      return new Entity(EntityKind.ORE, id, position, images, 0, 0,
-              actionPeriod, 0);
+      return new Ore(id, position, actionPeriod, imageKey);
    }
 
-   public static Entity createOreBlob(String id, Point position,
-                                      int actionPeriod, int animationPeriod, List<PImage> images)
+   public static OreBlob createOreBlob(String id, Point position,
+                                       int actionPeriod, int animationPeriod, String imageKey)
    {
-      return new Entity(EntityKind.ORE_BLOB, id, position, images,
-              0, 0, actionPeriod, animationPeriod);
+      return new OreBlob(id, position, actionPeriod, animationPeriod,
+              imageKey);
    }
 
-   public static Entity createQuake(Point position, List<PImage> images)
+   public static Quake createQuake(Point position, String imageKey)
    {
-      return new Entity(EntityKind.QUAKE, Functions.QUAKE_ID, position, images,
-              0, 0, Functions.QUAKE_ACTION_PERIOD, Functions.QUAKE_ANIMATION_PERIOD);
+      return new Quake(position, imageKey);
    }
 
-   public static Entity createVein(String id, Point position, int actionPeriod,
-                                   List<PImage> images)
+   public static Vein createVein(String id, Point position, int actionPeriod,
+                                 String imageKey)
    {
-      return new Entity(EntityKind.VEIN, id, position, images, 0, 0,
-              actionPeriod, 0);
+      return new Vein(id, position, actionPeriod, imageKey);
    }
 }
@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/*
+   Immutable copy of what is drawn in a rectangle of the world at one
+   moment: the background of each cell and the sprite and frame of each
+   occupied one. The simulation
+   thread builds one after every tick and the render thread draws the
+   latest without touching live entities.
+
+   Entities whose frames are derived from time carry their animation
+   epoch and step instead of a frame, so they keep animating between
+   snapshots.
+*/
+final class WorldSnapshot
+{
+   private static final int EMPTY = -1;
+
+   private final int left;
+   private final int top;
+   private final int cols;
+   private final int rows;
+   private final long time;
+   private final int[] spriteIds;
+   private final int[] frames;
+   private final long[] epochs;
+   private final long[] steps;
+   private final Background[] backgrounds;
+
+   private WorldSnapshot(int left, int top, int cols, int rows, long time)
+   {
+      this.left = left;
+      this.top = top;
+      this.cols = cols;
+      this.rows = rows;
+      this.time = time;
+      this.spriteIds = new int[cols * rows];
+      this.frames = new int[cols * rows];
+      this.epochs = new long[cols * rows];
+      this.steps = new long[cols * rows];
+      this.backgrounds = new Background[cols * rows];
+      Arrays.fill(this.spriteIds, EMPTY);
+   }
+
+   /* the rectangle is clipped to the world */
+   public static WorldSnapshot capture(WorldModel world, int left, int top,
+      int cols, int rows, long time)
+   {
+      int x0 = Math.max(left, 0);
+      int y0 = Math.max(top, 0);
+      int x1 = Math.min(left + cols, world.numCols());
+      int y1 = Math.min(top + rows, world.numRows());
+      WorldSnapshot snapshot = new WorldSnapshot(x0, y0,
+              Math.max(0, x1 - x0), Math.max(0, y1 - y0), time);
+
+      // backgrounds never change once made, so sharing them is safe
+      for (int y = y0; y < y1; y++)
+      {
+         for (int x = x0; x < x1; x++)
+         {
+            snapshot.backgrounds[snapshot.index(x, y)] =
+                    world.backgroundAt(x, y);
+         }
+      }
+      world.forEachEntityIn(x0, y0, snapshot.cols, snapshot.rows,
+              snapshot::record);
+      return snapshot;
+   }
+
+   private void record(Entity entity)
+   {
+      int i = this.index(entity.position().x(), entity.position().y());
+      this.spriteIds[i] = entity.spriteId();
+      this.frames[i] = entity.imageIndex();
+      if (entity instanceof AnimatedEntity)
+      {
+         AnimatedEntity animated = (AnimatedEntity)entity;
+         this.epochs[i] = animated.animationEpoch();
+         this.steps[i] = animated.animationStep();
+      }
+   }
+
+   public long time()
+   {
+      return this.time;
+   }
+
+   /* whether every cell of the given rectangle was captured */
+   public boolean covers(int left, int top, int cols, int rows)
+   {
+      return left >= this.left && top >= this.top &&
+              left + cols <= this.left + this.cols &&
+              top + rows <= this.top + this.rows;
+   }
+
+   public boolean isOccupied(int x, int y)
+   {
+      return this.spriteIds[this.index(x, y)] != EMPTY;
+   }
+
+   public Background backgroundAt(int x, int y)
+   {
+      return this.backgrounds[this.index(x, y)];
+   }
+
+   /* sprite drawn at (x, y); only meaningful when the cell is occupied */
+   public int spriteId(int x, int y)
+   {
+      return this.spriteIds[this.index(x, y)];
+   }
+
+   public int imageIndex(int x, int y, long now)
+   {
+      int i = this.index(x, y);
+      if (this.steps[i] == 0)
+      {
+         return this.frames[i];
+      }
+      return AnimatedEntity.derivedFrame(this.epochs[i], this.steps[i], now);
+   }
+
+   private int index(int x, int y)
+   {
+      return (y - this.top) * this.cols + (x - this.left);
+   }
+}
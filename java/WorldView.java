@@ -1,62 +1,230 @@
+import java.util.Arrays;
+
 import processing.core.PApplet;
 import processing.core.PImage;
 
-import java.util.Optional;
+/*
+   Draws the world incrementally: after the first frame only the cells
+   the world reports as dirty are repainted, plus any cell whose
+   occupant's frame is derived from time and has moved on since it was
+   drawn. Shifting the view, or more changes than the world keeps
+   track of, repaints the whole viewport.
 
+   Drawing from snapshots reads nothing from the world, which is busy on
+   another thread, so the view only starts dirty tracking and its
+   background cache on the first frame drawn from the live world.
+*/
 final class WorldView
 {
    private PApplet screen;
    private WorldModel world;
+   private ImageStore imageStore;
    private int tileWidth;
    private int tileHeight;
    private Viewport viewport;
+   private BackgroundCache background;
+   private DirtyCells dirtyCells;
+   private PImage[] drawnImages;
+   private Background[] drawnBackgrounds;
+   private boolean fullRedraw;
+   private SpriteAtlas atlas;
 
    public WorldView(int numRows, int numCols, PApplet screen, WorldModel world,
-      int tileWidth, int tileHeight)
+      ImageStore imageStore, int tileWidth, int tileHeight)
    {
       this.screen = screen;
       this.world = world;
+      this.imageStore = imageStore;
       this.tileWidth = tileWidth;
       this.tileHeight = tileHeight;
       this.viewport = new Viewport(numRows, numCols);
+      this.drawnImages = new PImage[numRows * numCols];
+      this.drawnBackgrounds = new Background[numRows * numCols];
+      this.fullRedraw = true;
+   }
+
+   private void startLive()
+   {
+      this.background = new BackgroundCache(screen, world, imageStore,
+              tileWidth, tileHeight);
+      this.dirtyCells = world.trackDirtyCells();
+      this.trackViewport();
+      this.fullRedraw = true;
+   }
+
+   /* draws entity frames out of atlas from now on; null draws them singly */
+   public void useAtlas(SpriteAtlas atlas)
+   {
+      this.atlas = atlas;
+      this.fullRedraw = true;
+   }
+
+   private void drawEntities(long now)
+   {
+      world.forEachEntityIn(viewport.col(), viewport.row(),
+              viewport.numCols(), viewport.numRows(),
+              entity -> this.drawEntity(entity, entity.position().x(),
+                      entity.position().y(), now));
+   }
+
+   private void drawEntity(Entity entity, int x, int y, long now)
+   {
+      this.drawImage(imageStore.getCurrentImage(entity, now), x, y);
+   }
+
+   private void drawImage(PImage image, int x, int y)
+   {
+      int screenX = viewport.viewX(x) * tileWidth;
+      int screenY = viewport.viewY(y) * tileHeight;
+      if (this.atlas != null)
+      {
+         this.atlas.draw(screen, image, screenX, screenY);
+      }
+      else
+      {
+         screen.image(image, screenX, screenY);
+      }
+      this.drawnImages[this.viewIndex(x, y)] = image;
+   }
+
+   private void drawCell(int x, int y, long now)
+   {
+      this.background.drawCell(this.viewport, x, y);
+      this.drawnImages[this.viewIndex(x, y)] = null;
+
+      Entity occupant = this.world.occupantAt(x, y);
+      if (occupant != null)
+      {
+         this.drawEntity(occupant, x, y, now);
+      }
+   }
+
+   private void drawDirtyCells(long now)
+   {
+      for (int i = 0; i < this.dirtyCells.count(); i++)
+      {
+         long cell = this.dirtyCells.get(i);
+         this.drawCell(Point.unpackX(cell), Point.unpackY(cell), now);
+      }
+   }
+
+   /* marks outside the view would only fill the list up */
+   private void trackViewport()
+   {
+      this.dirtyCells.track(viewport.col(), viewport.row(),
+              viewport.numCols(), viewport.numRows());
    }
 
-   private void drawBackground()
+   /* time-derived frames change without any event marking them dirty */
+   private void drawAdvancedFrames(long now)
    {
       for (int row = 0; row < viewport.numRows(); row++)
       {
          for (int col = 0; col < viewport.numCols(); col++)
          {
-            Point worldPoint = viewport.viewportToWorld( col, row);
-            Optional<PImage> image = world.getBackgroundImage(worldPoint);
-            if (image.isPresent())
+            int x = viewport.worldX(col);
+            int y = viewport.worldY(row);
+            Entity occupant = this.world.occupantAt(x, y);
+            if (occupant instanceof AnimatedEntity &&
+                    ((AnimatedEntity)occupant).hasDerivedFrames() &&
+                    imageStore.getCurrentImage(occupant, now) !=
+                            this.drawnImages[this.viewIndex(x, y)])
             {
-               screen.image(image.get(), col * tileWidth,
-                       row * tileHeight);
+               this.drawCell(x, y, now);
             }
          }
       }
    }
 
-   private void drawEntities()
+   private int viewIndex(int x, int y)
    {
-      for (Entity entity : world.entities())
+      return viewport.viewY(y) * viewport.numCols() + viewport.viewX(x);
+   }
+
+   /*
+      Draws from a snapshot published by the simulation thread instead of
+      the live world, backgrounds included. Cells are compared with what
+      was last drawn there, so only changed cells are repainted. A
+      snapshot that does not cover the view yet leaves the previous
+      frame on screen.
+   */
+   public void drawSnapshot(WorldSnapshot snapshot, long now)
+   {
+      if (snapshot == null || !snapshot.covers(viewport.col(), viewport.row(),
+              viewport.numCols(), viewport.numRows()))
       {
-         Point pos = entity.position();
+         return;
+      }
 
-         if (viewport.contains(pos))
+      if (this.fullRedraw)
+      {
+         Arrays.fill(this.drawnImages, null);
+         Arrays.fill(this.drawnBackgrounds, null);
+         this.fullRedraw = false;
+      }
+
+      for (int row = 0; row < viewport.numRows(); row++)
+      {
+         for (int col = 0; col < viewport.numCols(); col++)
          {
-            Point viewPoint = viewport.worldToViewport( pos.x(), pos.y());
-            screen.image(entity.getCurrentImage(),
-                    viewPoint.x() * tileWidth, viewPoint.y() * tileHeight);
+            int x = viewport.worldX(col);
+            int y = viewport.worldY(row);
+            int i = this.viewIndex(x, y);
+            Background background = snapshot.backgroundAt(x, y);
+            PImage image = snapshot.isOccupied(x, y) ?
+                    imageStore.getCurrentImage(snapshot.spriteId(x, y),
+                            snapshot.imageIndex(x, y, now)) : null;
+            if (background == this.drawnBackgrounds[i] &&
+                    image == this.drawnImages[i])
+            {
+               continue;
+            }
+
+            if (background != null)
+            {
+               screen.image(imageStore.getCurrentImage(background),
+                       col * tileWidth, row * tileHeight);
+            }
+            this.drawnBackgrounds[i] = background;
+            this.drawnImages[i] = null;
+            if (image != null)
+            {
+               this.drawImage(image, x, y);
+            }
          }
       }
    }
 
-   public void drawViewport()
+   public int viewCol()
    {
-      this.drawBackground();
-      this.drawEntities();
+      return this.viewport.col();
+   }
+
+   public int viewRow()
+   {
+      return this.viewport.row();
+   }
+
+   public void drawViewport(long now)
+   {
+      if (this.dirtyCells == null)
+      {
+         this.startLive();
+      }
+
+      if (this.fullRedraw || this.dirtyCells.overflowed())
+      {
+         Arrays.fill(this.drawnImages, null);
+         this.background.draw(this.viewport);
+         this.drawEntities(now);
+         this.fullRedraw = false;
+      }
+      else
+      {
+         this.drawDirtyCells(now);
+         this.drawAdvancedFrames(now);
+      }
+      this.dirtyCells.clear();
    }
 
    private static int clamp(int value, int low, int high)
@@ -71,6 +239,14 @@ final class WorldView
       int newRow = clamp(this.viewport.row() + rowDelta, 0,
               this.world.numRows() - this.viewport.numRows());
 
-      this.viewport.shift(newCol, newRow);
+      if (newCol != this.viewport.col() || newRow != this.viewport.row())
+      {
+         this.viewport.shift(newCol, newRow);
+         if (this.dirtyCells != null)
+         {
+            this.trackViewport();
+         }
+         this.fullRedraw = true;
+      }
    }
 }
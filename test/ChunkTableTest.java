@@ -0,0 +1,64 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+   Checks for ChunkTable. Run with assertions enabled:
+      java -ea -cp <classes> ChunkTableTest
+*/
+final class ChunkTableTest
+{
+   public static void main(String [] args)
+   {
+      matchesMapUnderRandomPutsAndRemoves();
+      System.out.println("ChunkTableTest passed");
+   }
+
+   /*
+      Chunks are drawn from a small square, including negative
+      coordinates, so probe runs collide and removals shift entries back
+      across them.
+   */
+   private static void matchesMapUnderRandomPutsAndRemoves()
+   {
+      ChunkTable<Integer> table = new ChunkTable<>();
+      Map<Long, Integer> expected = new HashMap<>();
+      Random random = new Random(1);
+      int span = 40;
+
+      for (int step = 0; step < 200000; step++)
+      {
+         int x = (random.nextInt(span) - span / 2) * ChunkTable.CHUNK_SIZE;
+         int y = (random.nextInt(span) - span / 2) * ChunkTable.CHUNK_SIZE;
+         long key = Point.pack(x, y);
+         if (random.nextInt(3) == 0)
+         {
+            table.remove(x, y);
+            expected.remove(key);
+         }
+         else
+         {
+            table.put(x, y, step);
+            expected.put(key, step);
+         }
+
+         TestSupport.check(table.size() == expected.size(), "size differs");
+         int px = x + random.nextInt(ChunkTable.CHUNK_SIZE);
+         int py = y + random.nextInt(ChunkTable.CHUNK_SIZE);
+         TestSupport.check(eq(table.get(px, py), expected.get(key)),
+                 "lookup differs after step " + step);
+      }
+
+      for (Map.Entry<Long, Integer> entry : expected.entrySet())
+      {
+         TestSupport.check(entry.getValue().equals(table.get(
+                 Point.unpackX(entry.getKey()), Point.unpackY(entry.getKey()))),
+                 "chunk lost");
+      }
+   }
+
+   private static boolean eq(Integer a, Integer b)
+   {
+      return a == null ? b == null : a.equals(b);
+   }
+}
@@ -0,0 +1,111 @@
+import java.util.Random;
+
+/*
+   Checks for DistanceField. Run with assertions enabled:
+      java -ea -cp <classes> DistanceFieldTest
+*/
+final class DistanceFieldTest
+{
+   private static final int COLS = 48;
+   private static final int ROWS = 32;
+
+   public static void main(String [] args)
+   {
+      incrementalRepairMatchesRebuild();
+      System.out.println("DistanceFieldTest passed");
+   }
+
+   /*
+      Random changes to a world's walls, blacksmiths and miners, most of
+      them the kind the field repairs in place (new targets, freed
+      cells). After each one the shared field must hold exactly the
+      distances a field built from scratch finds.
+   */
+   private static void incrementalRepairMatchesRebuild()
+   {
+      WorldModel world = new WorldModel(ROWS, COLS, new Background("test"));
+      Random random = new Random(6);
+      for (int i = 0; i < COLS * ROWS / 4; i++)
+      {
+         addRandom(world, random, EntityKind.OBSTACLE, i);
+      }
+      addRandom(world, random, EntityKind.BLACKSMITH, 0);
+
+      DistanceField field = world.distanceField(EntityKind.BLACKSMITH);
+      for (int step = 1; step <= 3000; step++)
+      {
+         int op = random.nextInt(10);
+         if (op < 3)
+         {
+            addRandom(world, random, EntityKind.BLACKSMITH, step);
+         }
+         else if (op < 6)
+         {
+            removeRandom(world, random, EntityKind.OBSTACLE);
+         }
+         else if (op < 7)
+         {
+            removeRandom(world, random, EntityKind.BLACKSMITH);
+         }
+         else if (op < 8)
+         {
+            addRandom(world, random, EntityKind.OBSTACLE, step);
+         }
+         else
+         {
+            addRandom(world, random, EntityKind.MINER_NOT_FULL, step);
+         }
+
+         DistanceField rebuilt = new DistanceField(world,
+                 EntityKind.BLACKSMITH);
+         for (int y = 0; y < ROWS; y++)
+         {
+            for (int x = 0; x < COLS; x++)
+            {
+               TestSupport.check(
+                       field.distanceAt(x, y) == rebuilt.distanceAt(x, y),
+                       "distance at (" + x + ", " + y + ") differs after " +
+                       "step " + step);
+            }
+         }
+      }
+   }
+
+   private static void addRandom(WorldModel world, Random random,
+                                 EntityKind kind, int step)
+   {
+      int x = random.nextInt(COLS);
+      int y = random.nextInt(ROWS);
+      if (world.isOccupied(x, y))
+      {
+         return;
+      }
+
+      Point pos = new Point(x, y);
+      String id = kind + "_" + step;
+      switch (kind)
+      {
+         case OBSTACLE:
+            world.addEntity(WorldModel.createObstacle(id, pos, "obstacle"));
+            break;
+         case BLACKSMITH:
+            world.addEntity(WorldModel.createBlacksmith(id, pos, "smith"));
+            break;
+         default:
+            world.addEntity(WorldModel.createMinerNotFull(id, 2, pos, 1, 1,
+                    "miner"));
+            break;
+      }
+   }
+
+   private static void removeRandom(WorldModel world, Random random,
+                                    EntityKind kind)
+   {
+      Entity nearest = world.findNearest(random.nextInt(COLS),
+              random.nextInt(ROWS), kind);
+      if (nearest != null)
+      {
+         world.removeEntity(nearest);
+      }
+   }
+}
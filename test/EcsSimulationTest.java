@@ -0,0 +1,102 @@
+import java.io.FileNotFoundException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+   Checks for EcsSimulation against the object engine. Run with
+   assertions enabled:
+      java -ea -cp <classes> EcsSimulationTest
+
+   The two engines do not move miners the same way (the data-oriented
+   one keeps the greedy step), so after the first actions their worlds
+   drift apart and no census can be expected to match in full. What
+   neither engine may change is compared instead.
+*/
+final class EcsSimulationTest
+{
+   private static final long SEED = 1;
+   private static final long CHECK_MILLIS = 60000;
+   private static final long END_MILLIS = 1800000;
+   private static final long TICK_MILLIS = 10;
+
+   public static void main(String [] args) throws FileNotFoundException
+   {
+      censusMatchesOnLoad(1);
+      censusMatchesOnLoad(3);
+      fixedKindsMatchWhileRunning();
+      System.out.println("EcsSimulationTest passed");
+   }
+
+   /* a tiled copy holds tiles x tiles of everything in the world */
+   private static void censusMatchesOnLoad(int tiles)
+           throws FileNotFoundException
+   {
+      WorldModel world = TestSupport.loadWorld(TestSupport.WORLD_FILE, null);
+      EcsSimulation ecs = EcsSimulation.fromWorldModel(world, tiles, 0);
+
+      Map<EntityKind, Integer> expected = census(world);
+      expected.replaceAll((kind, count) -> count * tiles * tiles);
+      TestSupport.check(ecs.census().equals(expected),
+              "census " + ecs.census() + " on load, expected " + expected);
+   }
+
+   /*
+      Both engines run the same world from the same seed. At every check
+      the walls and blacksmiths must be untouched in both, and both must
+      still have every miner, full or not.
+   */
+   private static void fixedKindsMatchWhileRunning()
+           throws FileNotFoundException
+   {
+      Functions.rand.setSeed(SEED);
+      SimulatedClock clock = new SimulatedClock(0);
+      EventScheduler scheduler = new EventScheduler(1.0,
+              new EventHeap(new EventComparator()), clock);
+      WorldModel world = TestSupport.loadWorld(TestSupport.WORLD_FILE,
+              scheduler);
+
+      Functions.rand.setSeed(SEED);
+      EcsSimulation ecs = EcsSimulation.fromWorldModel(
+              TestSupport.loadWorld(TestSupport.WORLD_FILE, null), 1, 0);
+
+      Map<EntityKind, Integer> loaded = census(world);
+      long ecsTime = 0;
+      for (long time = CHECK_MILLIS; time <= END_MILLIS; time += CHECK_MILLIS)
+      {
+         TestSupport.runUntil(scheduler, clock, time);
+         for (; ecsTime <= time; ecsTime += TICK_MILLIS)
+         {
+            ecs.tick(ecsTime);
+         }
+
+         Map<EntityKind, Integer> objects = census(world);
+         Map<EntityKind, Integer> data = ecs.census();
+         for (EntityKind kind :
+                 new EntityKind[]{EntityKind.OBSTACLE, EntityKind.BLACKSMITH})
+         {
+            TestSupport.check(objects.get(kind).equals(loaded.get(kind)) &&
+                    data.get(kind).equals(loaded.get(kind)),
+                    kind + " count changed by " + time);
+         }
+         TestSupport.check(miners(objects) == miners(loaded) &&
+                 miners(data) == miners(loaded),
+                 "miners lost by " + time + ": " + objects + " " + data);
+      }
+   }
+
+   private static int miners(Map<EntityKind, Integer> census)
+   {
+      return census.getOrDefault(EntityKind.MINER_FULL, 0) +
+              census.getOrDefault(EntityKind.MINER_NOT_FULL, 0);
+   }
+
+   private static Map<EntityKind, Integer> census(WorldModel world)
+   {
+      Map<EntityKind, Integer> counts = new EnumMap<>(EntityKind.class);
+      for (Entity entity : world.entities())
+      {
+         counts.merge(entity.kind(), 1, Integer::sum);
+      }
+      return counts;
+   }
+}
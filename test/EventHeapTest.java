@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+   Checks for EventHeap. Run with assertions enabled:
+      java -ea -cp <classes> EventHeapTest
+*/
+final class EventHeapTest
+{
+   public static void main(String [] args)
+   {
+      removalByIndexKeepsHeapOrder();
+      removedEventCanBeQueuedAgain();
+      System.out.println("EventHeapTest passed");
+   }
+
+   /*
+      Removes events from arbitrary slots, including the last one and
+      the root, then checks that what is left drains in (time, sequence)
+      order and that every event's recorded slot was kept up to date.
+   */
+   private static void removalByIndexKeepsHeapOrder()
+   {
+      EventHeap heap = new EventHeap(new EventComparator());
+      List<Event> live = new ArrayList<>();
+      Random random = new Random(3);
+
+      for (int i = 0; i < 2000; i++)
+      {
+         Event event = new Event(null, random.nextInt(500), null, i);
+         heap.add(event);
+         live.add(event);
+      }
+
+      for (int i = 0; i < 1000; i++)
+      {
+         Event event = live.remove(random.nextInt(live.size()));
+         TestSupport.check(heap.remove(event), "queued event not removed");
+         TestSupport.check(event.heapIndex == -1, "removed event keeps a slot");
+         TestSupport.check(!heap.remove(event), "event removed twice");
+      }
+      TestSupport.check(heap.size() == live.size(), "size after removals");
+
+      live.sort(new EventComparator());
+      for (Event expected : live)
+      {
+         TestSupport.check(heap.poll() == expected,
+                 "heap drained out of order after removals");
+      }
+      TestSupport.check(heap.isEmpty(), "heap not drained");
+   }
+
+   private static void removedEventCanBeQueuedAgain()
+   {
+      EventHeap heap = new EventHeap(new EventComparator());
+      Event a = new Event(null, 10, null, 0);
+      Event b = new Event(null, 20, null, 1);
+      heap.add(a);
+      heap.add(b);
+
+      TestSupport.check(heap.remove(a), "root not removed");
+      TestSupport.check(heap.peek() == b, "root removal left wrong root");
+      heap.add(a);
+      TestSupport.check(heap.pollBefore(11) == a, "re-queued event lost");
+      TestSupport.check(heap.pollBefore(11) == null, "event polled early");
+      TestSupport.check(heap.pollBefore(21) == b, "last event lost");
+   }
+}
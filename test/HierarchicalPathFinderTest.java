@@ -0,0 +1,154 @@
+import java.util.Random;
+
+/*
+   Checks for HierarchicalPathFinder. Run with assertions enabled:
+      java -ea -cp <classes> HierarchicalPathFinderTest
+*/
+final class HierarchicalPathFinderTest
+{
+   private static final int SIZE = 96;
+   private static final int CLUSTER = HierarchicalPathFinder.CLUSTER_SIZE;
+
+   // HPA* routes through border nodes, so it may take a longer way round
+   private static final double MAX_STRETCH = 1.3;
+
+   public static void main(String [] args)
+   {
+      pathsAfterClusterChangesMatchPlainSearch();
+      System.out.println("HierarchicalPathFinderTest passed");
+   }
+
+   /*
+      Each round rebuilds the walls of one cluster at random, reporting
+      every change the way the world does, then compares HPA* routes
+      with plain A* ones between random far-apart cells: HPA* must find
+      a route exactly when A* does, every route must be walkable, and
+      HPA* may be longer than the shortest route but not by much.
+   */
+   private static void pathsAfterClusterChangesMatchPlainSearch()
+   {
+      WorldModel world = new WorldModel(SIZE, SIZE, new Background("test"));
+      Random random = new Random(8);
+      for (int i = 0; i < SIZE * SIZE / 5; i++)
+      {
+         toggleObstacle(world, null, random.nextInt(SIZE),
+                 random.nextInt(SIZE));
+      }
+
+      HierarchicalPathFinder hierarchical = new HierarchicalPathFinder(world);
+      PathFinder plain = new PathFinder(SIZE, SIZE);
+      for (int round = 0; round < 40; round++)
+      {
+         int left = random.nextInt(SIZE / CLUSTER) * CLUSTER;
+         int top = random.nextInt(SIZE / CLUSTER) * CLUSTER;
+         for (int i = 0; i < 60; i++)
+         {
+            toggleObstacle(world, hierarchical,
+                    left + random.nextInt(CLUSTER),
+                    top + random.nextInt(CLUSTER));
+         }
+
+         for (int query = 0; query < 10; query++)
+         {
+            comparePaths(world, hierarchical, plain, random, round);
+         }
+      }
+   }
+
+   private static void comparePaths(WorldModel world,
+                                    HierarchicalPathFinder hierarchical,
+                                    PathFinder plain, Random random,
+                                    int round)
+   {
+      Point start = randomEmptyCell(world, random);
+      Point goal = randomEmptyCell(world, random);
+      while (Math.abs(start.x() - goal.x()) + Math.abs(start.y() - goal.y()) <
+              HierarchicalPathFinder.MIN_DISTANCE)
+      {
+         goal = randomEmptyCell(world, random);
+      }
+
+      Blacksmith smith = WorldModel.createBlacksmith("smith", goal, "smith");
+      world.addEntity(smith);
+      hierarchical.cellChanged(goal);
+
+      Path shortest = plain.findPath(start, smith, world.emptyCells());
+      Path routed = hierarchical.findPath(start, smith, plain,
+              world.emptyCells());
+      String where = " from " + start + " to " + goal + " in round " + round;
+      TestSupport.check((shortest == null) == (routed == null),
+              "finders disagree on reachability" + where);
+      if (shortest != null)
+      {
+         int length = shortest.remaining();
+         int routedLength = routed.remaining();
+         checkWalkable(world, start, smith, shortest, where);
+         checkWalkable(world, start, smith, routed, where);
+         TestSupport.check(routedLength >= length,
+                 "HPA* route shorter than the shortest" + where);
+         TestSupport.check(routedLength <= length * MAX_STRETCH,
+                 "HPA* route " + routedLength + " steps against " + length +
+                 where);
+      }
+
+      world.removeEntity(smith);
+      hierarchical.cellChanged(goal);
+   }
+
+   /* consumes path */
+   private static void checkWalkable(WorldModel world, Point start,
+                                     Entity target, Path path, String where)
+   {
+      int x = start.x();
+      int y = start.y();
+      while (path.hasNext())
+      {
+         int nx = path.nextX();
+         int ny = path.nextY();
+         TestSupport.check(Math.abs(nx - x) + Math.abs(ny - y) == 1,
+                 "route jumps at (" + nx + ", " + ny + ")" + where);
+         TestSupport.check(!world.isOccupied(nx, ny),
+                 "route crosses a wall at (" + nx + ", " + ny + ")" + where);
+         x = nx;
+         y = ny;
+         path.advance();
+      }
+      TestSupport.check(new Point(x, y).adjacent(target.position()),
+              "route ends away from the target" + where);
+   }
+
+   private static void toggleObstacle(WorldModel world,
+                                      HierarchicalPathFinder hierarchical,
+                                      int x, int y)
+   {
+      Point pos = new Point(x, y);
+      Entity occupant = world.occupantAt(x, y);
+      if (occupant == null)
+      {
+         world.addEntity(WorldModel.createObstacle("obstacle", pos,
+                 "obstacle"));
+      }
+      else
+      {
+         world.removeEntity(occupant);
+      }
+
+      if (hierarchical != null)
+      {
+         hierarchical.cellChanged(pos);
+      }
+   }
+
+   private static Point randomEmptyCell(WorldModel world, Random random)
+   {
+      while (true)
+      {
+         int x = random.nextInt(SIZE);
+         int y = random.nextInt(SIZE);
+         if (!world.isOccupied(x, y))
+         {
+            return new Point(x, y);
+         }
+      }
+   }
+}
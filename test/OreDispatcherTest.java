@@ -0,0 +1,57 @@
+/*
+   Checks for OreDispatcher. Run with assertions enabled:
+      java -ea -cp <classes> OreDispatcherTest
+*/
+final class OreDispatcherTest
+{
+   private static final int ORE_PERIOD = 1000000;
+
+   public static void main(String [] args)
+   {
+      parkedMinerDoesNotTakeActiveMinersOre();
+      System.out.println("OreDispatcherTest passed");
+   }
+
+   /*
+      active claims the only ore; parked, closer to it but too late in
+      the same batch period, finds nothing and parks. The next batch
+      must leave the ore with active rather than hand it to the miner
+      that is not going to move.
+   */
+   private static void parkedMinerDoesNotTakeActiveMinersOre()
+   {
+      WorldModel world = new WorldModel(3, 20, new Background("test"));
+      SimulatedClock clock = new SimulatedClock(0);
+      EventScheduler scheduler = new EventScheduler(1.0,
+              new EventHeap(new EventComparator()), clock);
+      scheduler.watch(world);
+
+      Ore ore = WorldModel.createOre("ore", new Point(10, 1), ORE_PERIOD,
+              Functions.ORE_KEY);
+      world.addEntity(ore);
+
+      Miner active = WorldModel.createMinerNotFull("active", 2,
+              new Point(1, 1), 100, 100, "miner");
+      world.addEntity(active);
+      scheduler.scheduleActions(active, world);
+
+      // active claims the ore at 100, in batch period 1
+      TestSupport.runUntil(scheduler, clock, 120);
+      Miner parked = WorldModel.createMinerNotFull("parked", 2,
+              new Point(12, 1), 20, 100, "miner");
+      world.addEntity(parked);
+      scheduler.scheduleActions(parked, world);
+
+      TestSupport.runUntil(scheduler, clock, 190);
+      TestSupport.check(scheduler.parkedCount() == 1,
+              "late miner did not park");
+
+      TestSupport.runUntil(scheduler, clock, 3000);
+      TestSupport.check(!world.entities().contains(ore),
+              "contested ore never collected");
+      TestSupport.check(active.resourceCount() == 1,
+              "active miner lost its ore");
+      TestSupport.check(parked.resourceCount() == 0,
+              "parked miner collected ore");
+   }
+}
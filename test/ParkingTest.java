@@ -0,0 +1,95 @@
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+   Checks for parking in EventScheduler. Run with assertions enabled:
+      java -ea -cp <classes> ParkingTest
+*/
+final class ParkingTest
+{
+   private static final int ACTION_PERIOD = 100;
+   private static final int ORE_PERIOD = 1000000;
+   private static final long STUCK_MILLIS = 120000;
+
+   public static void main(String [] args) throws FileNotFoundException
+   {
+      parkedMinerResumesWhenOreAppears();
+      fullMinersAreNotWalledIn(5);
+      fullMinersAreNotWalledIn(8);
+      System.out.println("ParkingTest passed");
+   }
+
+   /*
+      The ore is only added to the world, never scheduled, so nothing
+      but the world's own report can wake the miner.
+   */
+   private static void parkedMinerResumesWhenOreAppears()
+   {
+      WorldModel world = new WorldModel(10, 10, new Background("test"));
+      SimulatedClock clock = new SimulatedClock(0);
+      EventScheduler scheduler = new EventScheduler(1.0,
+              new EventHeap(new EventComparator()), clock);
+      scheduler.watch(world);
+
+      Miner miner = WorldModel.createMinerNotFull("miner", 2,
+              new Point(1, 1), ACTION_PERIOD, ACTION_PERIOD, "miner");
+      world.addEntity(miner);
+      scheduler.scheduleActions(miner, world);
+
+      TestSupport.runUntil(scheduler, clock, 1000);
+      TestSupport.check(scheduler.parkedCount() == 1,
+              "miner with no ore not parked");
+
+      Ore ore = WorldModel.createOre("ore", new Point(4, 1), ORE_PERIOD,
+              Functions.ORE_KEY);
+      world.addEntity(ore);
+      TestSupport.check(scheduler.parkedCount() == 0,
+              "new ore did not wake the miner");
+
+      TestSupport.runUntil(scheduler, clock, 2000);
+      TestSupport.check(miner.resourceCount() == 1,
+              "woken miner did not collect ore");
+      TestSupport.check(!world.entities().contains(ore),
+              "collected ore still in world");
+   }
+
+   /*
+      Miners that ran out of ore used to park around the blacksmith at
+      (0, 11) until the full miners outside could not reach it, and
+      those stayed full for the rest of the hour: with seed 5 first, and
+      with seed 8 once the dispatcher changed who parks where. No miner
+      may now stay full for more than STUCK_MILLIS.
+   */
+   private static void fullMinersAreNotWalledIn(long seed)
+           throws FileNotFoundException
+   {
+      Functions.rand.setSeed(seed);
+      SimulatedClock clock = new SimulatedClock(0);
+      EventScheduler scheduler = new EventScheduler(1.0,
+              new EventHeap(new EventComparator()), clock);
+      scheduler.setDerivedAnimation(true);
+      WorldModel world = TestSupport.loadWorld(TestSupport.WORLD_FILE,
+              scheduler);
+
+      Map<Entity, Long> fullSince = new HashMap<>();
+      for (long time = 1000; time <= 3600000; time += 1000)
+      {
+         TestSupport.runUntil(scheduler, clock, time);
+         for (Entity entity : world.entities())
+         {
+            if (entity.kind() != EntityKind.MINER_FULL)
+            {
+               fullSince.remove(entity);
+               continue;
+            }
+
+            fullSince.putIfAbsent(entity, time);
+            long since = fullSince.get(entity);
+            TestSupport.check(time - since <= STUCK_MILLIS,
+                    entity.id() + " stuck full since " + since +
+                    " with seed " + seed);
+         }
+      }
+   }
+}
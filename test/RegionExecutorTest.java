@@ -0,0 +1,81 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+   Checks for RegionExecutor. Run with assertions enabled:
+      java -ea -cp <classes> RegionExecutorTest
+*/
+final class RegionExecutorTest
+{
+   private static final long SEED = 4;
+   private static final long CHECK_MILLIS = 60000;
+   private static final long END_MILLIS = 1200000;
+
+   public static void main(String [] args) throws FileNotFoundException
+   {
+      sameWorldOnAnyPool();
+      System.out.println("RegionExecutorTest passed");
+   }
+
+   /*
+      The world is hashed every simulated minute. Run on one thread and
+      on four from the same seed, every hash must match, and the four
+      threads must really have had regions to share out.
+   */
+   private static void sameWorldOnAnyPool() throws FileNotFoundException
+   {
+      List<Long> serial = new ArrayList<>();
+      run(1, serial);
+      List<Long> parallel = new ArrayList<>();
+      RegionExecutor regions = run(4, parallel);
+
+      for (int i = 0; i < serial.size(); i++)
+      {
+         TestSupport.check(serial.get(i).equals(parallel.get(i)),
+                 "worlds differ after " + (i + 1) * CHECK_MILLIS + " ms");
+      }
+      TestSupport.check(regions.regionEvents() > 0,
+              "no event ran inside its region");
+      TestSupport.check(regions.parallelWindows() > 0,
+              "no window went to the pool");
+   }
+
+   private static RegionExecutor run(int threads, List<Long> hashes)
+           throws FileNotFoundException
+   {
+      SimulatedClock clock = new SimulatedClock(0);
+      EventScheduler scheduler = new EventScheduler(1.0,
+              new EventHeap(new EventComparator()), clock);
+      WorldModel world = TestSupport.loadWorld(TestSupport.WORLD_FILE,
+              scheduler);
+      RegionExecutor regions = new RegionExecutor(world, scheduler, clock,
+              threads, SEED);
+
+      for (long time = CHECK_MILLIS; time <= END_MILLIS; time += CHECK_MILLIS)
+      {
+         regions.runUntil(time);
+         hashes.add(hash(world));
+      }
+      return regions;
+   }
+
+   /* every entity's kind, id, cell, frame and load, in registry order */
+   private static long hash(WorldModel world)
+   {
+      long hash = world.oreDispatcher().collected();
+      for (Entity entity : world.entities())
+      {
+         hash = hash * 31 + entity.kind().ordinal();
+         hash = hash * 31 + entity.id().hashCode();
+         hash = hash * 31 + entity.position().x();
+         hash = hash * 31 + entity.position().y();
+         hash = hash * 31 + entity.imageIndex();
+         if (entity instanceof Miner)
+         {
+            hash = hash * 31 + ((Miner)entity).resourceCount();
+         }
+      }
+      return hash;
+   }
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/*
+   Checks for SpatialIndex. Run with assertions enabled:
+      java -ea -cp <classes> SpatialIndexTest
+*/
+final class SpatialIndexTest
+{
+   private static final int COLS = 300;
+   private static final int ROWS = 200;
+
+   public static void main(String [] args)
+   {
+      nearestWithPredicateMatchesBruteForce();
+      System.out.println("SpatialIndexTest passed");
+   }
+
+   /*
+      Entities are added, moved and removed at random; after each change
+      a query from a random point, keeping only entities with an even
+      id, must come back as close as the best a full scan finds. Ties
+      may be broken either way, so distances are compared.
+   */
+   private static void nearestWithPredicateMatchesBruteForce()
+   {
+      SpatialIndex index = new SpatialIndex(ROWS, COLS);
+      List<Entity> live = new ArrayList<>();
+      Random random = new Random(4);
+      Predicate<Entity> even = e -> e.id().hashCode() % 2 == 0;
+      Predicate<Entity> none = e -> false;
+
+      for (int step = 0; step < 5000; step++)
+      {
+         int op = random.nextInt(4);
+         if (op < 2 || live.isEmpty())
+         {
+            Entity ore = WorldModel.createOre("ore" + step,
+                    randomPoint(random), 1, Functions.ORE_KEY);
+            index.add(ore);
+            live.add(ore);
+         }
+         else if (op == 2)
+         {
+            Entity ore = live.get(random.nextInt(live.size()));
+            Point from = ore.position();
+            Point to = randomPoint(random);
+            ore.setPosition(to);
+            index.move(ore, from, to);
+         }
+         else
+         {
+            index.remove(live.remove(random.nextInt(live.size())));
+         }
+
+         int px = random.nextInt(COLS);
+         int py = random.nextInt(ROWS);
+         Entity found = index.findNearest(px, py, EntityKind.ORE, even);
+         Entity expected = bruteForce(live, px, py, even);
+         TestSupport.check(expected == null ? found == null :
+                 found != null && even.test(found) &&
+                         distance(found, px, py) ==
+                                 distance(expected, px, py),
+                 "nearest differs from a full scan at step " + step);
+         TestSupport.check(
+                 index.findNearest(px, py, EntityKind.ORE, none) == null,
+                 "rejected entity returned");
+      }
+   }
+
+   private static Entity bruteForce(List<Entity> live, int px, int py,
+      Predicate<Entity> accept)
+   {
+      Entity best = null;
+      for (Entity entity : live)
+      {
+         if (accept.test(entity) && (best == null ||
+                 distance(entity, px, py) < distance(best, px, py)))
+         {
+            best = entity;
+         }
+      }
+      return best;
+   }
+
+   private static long distance(Entity entity, int px, int py)
+   {
+      long dx = entity.position().x() - px;
+      long dy = entity.position().y() - py;
+      return dx * dx + dy * dy;
+   }
+
+   private static Point randomPoint(Random random)
+   {
+      return new Point(random.nextInt(COLS), random.nextInt(ROWS));
+   }
+}
@@ -0,0 +1,66 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/*
+   Helpers shared by the checks in this directory, which run as plain
+   programs with assertions enabled rather than under a test framework.
+*/
+final class TestSupport
+{
+   public static final String WORLD_FILE = "gaia.sav";
+   private static final int WORLD_ROWS = 30;
+   private static final int WORLD_COLS = 40;
+
+   private TestSupport()
+   {
+   }
+
+   public static void check(boolean condition, String message)
+   {
+      if (!condition)
+      {
+         throw new AssertionError(message);
+      }
+   }
+
+   /*
+      Steps the clock one millisecond at a time up to endTime, running
+      whatever falls due at each step.
+   */
+   public static void runUntil(EventScheduler scheduler, SimulatedClock clock,
+      long endTime)
+   {
+      for (long time = clock.currentTimeMillis(); time <= endTime; time++)
+      {
+         clock.advanceTo(time);
+         scheduler.updateOnTime(time + 1);
+      }
+   }
+
+   /*
+      The world in the save file, at the size the simulation drivers use.
+      With a scheduler, the world is watched by it and every entity is
+      scheduled on it; without one, nothing is scheduled.
+   */
+   public static WorldModel loadWorld(String fileName, EventScheduler scheduler)
+           throws FileNotFoundException
+   {
+      WorldModel world = new WorldModel(WORLD_ROWS, WORLD_COLS,
+              new Background("test"));
+      try (Scanner in = new Scanner(new File(fileName)))
+      {
+         Functions.load(in, world);
+      }
+
+      if (scheduler != null)
+      {
+         scheduler.watch(world);
+         for (Entity entity : world.entities())
+         {
+            scheduler.scheduleActions(entity, world);
+         }
+      }
+      return world;
+   }
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+   Checks for TimingWheel. Run with assertions enabled:
+      java -ea -cp <classes> TimingWheelTest
+*/
+final class TimingWheelTest
+{
+   public static void main(String [] args)
+   {
+      cascadedEventKeepsSchedulingOrder();
+      equalTimesDrainInSchedulingOrder();
+      nextTimeTracksEarliestEvent();
+      System.out.println("TimingWheelTest passed");
+   }
+
+   /*
+      a is scheduled first onto the second wheel; b, for the same time,
+      goes straight into the first wheel once the current tick is close
+      enough, and a only joins that bucket when it is cascaded down.
+   */
+   private static void cascadedEventKeepsSchedulingOrder()
+   {
+      TimingWheel wheel = new TimingWheel(1);
+      TestSupport.check(wheel.pollBefore(1) == null,
+              "empty wheel returned an event");
+
+      Event a = new Event(null, 100, null, 1);
+      wheel.add(a);
+      TestSupport.check(wheel.pollBefore(41) == null, "event returned early");
+
+      Event b = new Event(null, 100, null, 2);
+      wheel.add(b);
+
+      TestSupport.check(wheel.pollBefore(101) == a,
+              "cascaded event ran out of order");
+      TestSupport.check(wheel.pollBefore(101) == b,
+              "direct event ran out of order");
+      TestSupport.check(wheel.isEmpty(), "wheel not drained");
+   }
+
+   private static void equalTimesDrainInSchedulingOrder()
+   {
+      TimingWheel wheel = new TimingWheel(1);
+      Event[] events = new Event[8];
+      for (int i = 0; i < events.length; i++)
+      {
+         events[i] = new Event(null, 5000, null, i);
+         wheel.add(events[i]);
+      }
+
+      for (Event expected : events)
+      {
+         TestSupport.check(wheel.pollBefore(5001) == expected,
+                 "equal-time events ran out of order");
+      }
+      TestSupport.check(wheel.pollBefore(5001) == null, "wheel not drained");
+   }
+
+   /*
+      Random adds, cancellations and drains, checking nextTime against
+      the earliest live event after every step. Times spread far enough
+      to reach the upper wheels and the overflow list.
+   */
+   private static void nextTimeTracksEarliestEvent()
+   {
+      TimingWheel wheel = new TimingWheel(1);
+      List<Event> live = new ArrayList<>();
+      Random random = new Random(2);
+      long now = 0;
+      long sequence = 0;
+
+      for (int step = 0; step < 20000; step++)
+      {
+         int op = random.nextInt(10);
+         if (op < 5)
+         {
+            long delay = random.nextInt(4) == 0 ?
+                    random.nextInt(1 << 26) : random.nextInt(300);
+            Event event = new Event(null, now + delay, null, sequence++);
+            wheel.add(event);
+            live.add(event);
+         }
+         else if (op < 7 && !live.isEmpty())
+         {
+            Event event = live.remove(random.nextInt(live.size()));
+            TestSupport.check(wheel.remove(event), "live event not removed");
+         }
+         else
+         {
+            now += random.nextInt(200);
+            Event event;
+            while ((event = wheel.pollBefore(now + 1)) != null)
+            {
+               TestSupport.check(event.time() <= now, "event polled early");
+               TestSupport.check(live.remove(event), "unknown event polled");
+            }
+         }
+
+         long earliest = Long.MAX_VALUE;
+         for (Event event : live)
+         {
+            earliest = Math.min(earliest, event.time());
+         }
+         TestSupport.check(wheel.nextTime() == earliest,
+                 "nextTime differs at step " + step);
+      }
+   }
+}